@@ -0,0 +1,145 @@
+/**
+ * TokenizerBenchmark.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  JMH throughput benchmark for Tokenizer.process(String) and Tokenizer.processFile
+ *  on three inputs, for every Tokenizer.Engine:
+ *   - small:  data/sample.txt
+ *   - medium: ~1 MB of generated sentences
+ *   - large:  ~32 MB of generated sentences
+ *
+ *  Besides ops/s, each run reports "megabytes" (MB/s of UTF-8 input) and "tokens"
+ *  (tokens/s) as secondary results. The pom's jmh profile runs with -prof gc, whose
+ *  gc.alloc.rate.norm is bytes allocated per operation; divide it by the tokens per
+ *  operation printed at setup to get bytes per token.
+ *
+ *  Run: mvn -P jmh test-compile exec:exec
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class TokenizerBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String input;
+
+    @Param({"SCANNER", "LEGACY", "UTF8"})
+    public Tokenizer.Engine engine;
+
+    private String text;
+    private Path file;
+    private long fileBytes;
+    private Tokenizer.Options options;
+
+    /** Per-thread counters JMH reports as rates next to the main score. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public double megabytes;
+        public long tokens;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+            tokens = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        switch (input) {
+            case "small":
+                text = Files.readString(Path.of("data/sample.txt"));
+                break;
+            case "medium":
+                text = generate(1 << 20);
+                break;
+            case "large":
+                text = generate(32 << 20);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown input: " + input);
+        }
+        file = Files.createTempFile("tokenizer-bench-", ".txt");
+        Files.writeString(file, text, StandardCharsets.UTF_8);
+        fileBytes = Files.size(file);
+        options = new Tokenizer.Options().setEngine(engine);
+
+        System.out.println("\n" + input + ": " + fileBytes + " bytes, "
+                + Tokenizer.process(text, options).tokenCount() + " tokens per op");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Tokenizer.Result process(Counters counters) {
+        Tokenizer.Result r = Tokenizer.process(text, options);
+        counters.megabytes += fileBytes / 1e6;
+        counters.tokens += r.tokenCount();
+        return r;
+    }
+
+    @Benchmark
+    public Tokenizer.Result processFile(Counters counters) throws IOException {
+        Tokenizer.Result r = Tokenizer.processFile(file, options);
+        counters.megabytes += fileBytes / 1e6;
+        counters.tokens += r.tokenCount();
+        return r;
+    }
+
+    // ---- synthetic text ----
+
+    private static final String[] WORDS = {
+            "the", "of", "and", "a", "to", "in", "he", "was", "that", "it", "his", "her", "you", "with",
+            "had", "for", "as", "at", "she", "on", "said", "but", "they", "be", "not", "is", "him",
+            "from", "all", "were", "by", "there", "one", "which", "what", "would", "when", "could",
+            "little", "time", "house", "window", "morning", "garden", "letter", "question", "answer",
+            "remember", "afterwards", "ship's", "don't", "o'clock", "café", "naïve", "1850", "3.5"
+    };
+
+    /**
+     * About size chars of sentences drawn from WORDS with a skewed (roughly Zipf-like) choice,
+     * with capitals, commas, quotes and mixed terminators. Same seed, same text.
+     */
+    static String generate(int size) {
+        Random random = new Random(4485);
+        StringBuilder sb = new StringBuilder(size + 256);
+        while (sb.length() < size) {
+            int length = 4 + random.nextInt(20);
+            boolean quoted = random.nextInt(10) == 0;
+            if (quoted) sb.append('"');
+            for (int i = 0; i < length; i++) {
+                // squaring a uniform draw favours the common words at the front
+                double u = random.nextDouble();
+                String w = WORDS[(int) (u * u * WORDS.length)];
+                if (i == 0) w = Character.toUpperCase(w.charAt(0)) + w.substring(1);
+                sb.append(w);
+                if (i + 1 < length) sb.append(random.nextInt(8) == 0 ? ", " : " ");
+            }
+            int end = random.nextInt(10);
+            sb.append(end < 7 ? '.' : end < 9 ? '?' : '!');
+            if (quoted) sb.append('"');
+            sb.append(random.nextInt(12) == 0 ? "\n\n" : " ");
+        }
+        return sb.toString();
+    }
+}
@@ -34,12 +34,12 @@ public class BigramGreedyGenerator implements SentenceGenerator {
 
     private final Map<String, Integer> wordToId;
     private final Map<Integer, String> idToWord;
-    private final Map<Integer, List<int[]>> followers;
+    private final FollowerTable followers;
     private final List<int[]> startCandidates;
 
     public BigramGreedyGenerator(Map<String, Integer> wordToId,
                                  Map<Integer, String> idToWord,
-                                 Map<Integer, List<int[]>> followers,
+                                 FollowerTable followers,
                                  List<int[]> startCandidates) {
         this.wordToId = wordToId;
         this.idToWord = idToWord;
@@ -125,12 +125,12 @@ public class BigramGreedyGenerator implements SentenceGenerator {
         Set<Long> usedPairs = new HashSet<>();
 
         while (ids.size() < Math.max(1, maxTokens)) {
-            List<int[]> cands = followers.get(curr);
-            if (cands == null || cands.isEmpty()) break;
+            int context = followers.find(curr);
+            if (context < 0) break;
 
             int nextId = -1;
-            for (int[] cand : cands) {
-                int candId = cand[0];
+            for (int row = followers.first(context); row < followers.end(context); row++) {
+                int candId = followers.next(row);
 
                 if (last != null && candId == last) continue; // avoid A→B→A
                 long pairKey = (((long) curr) << 32) | (candId & 0xffffffffL);
@@ -28,13 +28,13 @@ public class BigramWeightedGenerator implements SentenceGenerator {
 
     private final Map<String, Integer> wordToId;
     private final Map<Integer, String> idToWord;
-    private final Map<Integer, List<int[]>> followers;
+    private final FollowerTable followers;
     private final List<int[]> startCandidates;
     private final Random random = new Random();
 
     public BigramWeightedGenerator(Map<String, Integer> wordToId,
                                    Map<Integer, String> idToWord,
-                                   Map<Integer, List<int[]>> followers,
+                                   FollowerTable followers,
                                    List<int[]> startCandidates) {
         this.wordToId = wordToId;
         this.idToWord = idToWord;
@@ -132,10 +132,10 @@ public class BigramWeightedGenerator implements SentenceGenerator {
         int curr = ids.get(ids.size() - 1);
 
         while (ids.size() < Math.max(1, maxTokens)) {
-            List<int[]> cands = followers.get(curr);
-            if (cands == null || cands.isEmpty()) break;
+            int context = followers.find(curr);
+            if (context < 0) break;
 
-            int nextId = chooseWeightedNext(cands);
+            int nextId = chooseWeightedNext(context);
             if (visited.contains(nextId)) break;
 
             ids.add(nextId);
@@ -151,18 +151,15 @@ public class BigramWeightedGenerator implements SentenceGenerator {
         return render(ids);
     }
 
-    private int chooseWeightedNext(List<int[]> cands) {
-        int total = 0;
-        for (int[] c : cands) total += c[1];
-
-        int roll = random.nextInt(total);
+    private int chooseWeightedNext(int context) {
+        int roll = random.nextInt(followers.total(context));
         int cumulative = 0;
-        for (int[] c : cands) {
-            cumulative += c[1];
-            if (roll < cumulative) return c[0];
+        for (int row = followers.first(context); row < followers.end(context); row++) {
+            cumulative += followers.count(row);
+            if (roll < cumulative) return followers.next(row);
         }
 
-        return cands.get(0)[0];
+        return followers.next(followers.first(context));
     }
 
     private String render(List<Integer> ids) {
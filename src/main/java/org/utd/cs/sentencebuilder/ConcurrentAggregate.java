@@ -0,0 +1,206 @@
+/**
+ * ConcurrentAggregate.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Cross-file word and n-gram totals that many threads can merge into at once.
+ *  Words and n-grams are split over SHARDS stripes by hash; each stripe is a
+ *  plain WordDictionary or NgramCounter guarded by its own lock, so threads only
+ *  wait for each other when they touch the same stripe. A merge groups its
+ *  entries by stripe first and takes each stripe's lock once.
+ *
+ *  Ids are global across stripes: (index within the stripe << SHARD_BITS) | stripe,
+ *  for words and for n-gram slots alike, so n-grams chain exactly as in
+ *  Tokenizer.Result (order k key = pack(global slot of the (k-1)-gram, wk)).
+ *
+ *  drainInto() copies everything into an ordinary Result once merging is over.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrentAggregate {
+
+    private static final int SHARD_BITS = 6;
+    private static final int SHARDS = 1 << SHARD_BITS;
+    private static final int SHARD_MASK = SHARDS - 1;
+
+    private final int maxOrder;
+    private final WordDictionary[] words = new WordDictionary[SHARDS];
+    private final NgramCounter[][] ngrams; // [order][stripe], orders 2 .. maxOrder
+
+    private final AtomicLong tokenCount = new AtomicLong();
+    private final Map<Integer, Integer> sentenceLengthCounts = new ConcurrentHashMap<>();
+
+    /** @param maxOrder highest n-gram order kept (2 .. Tokenizer.MAX_ORDER) */
+    public ConcurrentAggregate(int maxOrder) {
+        if (maxOrder < 2 || maxOrder > Tokenizer.MAX_ORDER) {
+            throw new IllegalArgumentException("n-gram order must be between 2 and " + Tokenizer.MAX_ORDER);
+        }
+        this.maxOrder = maxOrder;
+        for (int s = 0; s < SHARDS; s++) words[s] = new WordDictionary();
+        ngrams = new NgramCounter[maxOrder + 1][];
+        for (int k = 2; k <= maxOrder; k++) {
+            ngrams[k] = new NgramCounter[SHARDS];
+            for (int s = 0; s < SHARDS; s++) ngrams[k][s] = new NgramCounter();
+        }
+    }
+
+    /** Adds the words, n-grams (up to the lower of both orders) and sentence lengths of r. */
+    public void merge(Tokenizer.Result r) {
+        int[] wordMap = mergeWords(r);
+
+        int[] prefixMap = null;
+        for (int k = 2; k <= Math.min(maxOrder, r.maxOrder()); k++) {
+            NgramCounter from = r.ngramCounts(k);
+            long[] keys = new long[from.size()];
+            for (int slot = 0; slot < keys.length; slot++) {
+                long key = from.key(slot);
+                int first = (k == 2) ? wordMap[NgramCounter.high(key)] : prefixMap[NgramCounter.high(key)];
+                keys[slot] = NgramCounter.pack(first, wordMap[NgramCounter.low(key)]);
+            }
+            prefixMap = mergeNgrams(ngrams[k], from, keys);
+        }
+
+        tokenCount.addAndGet(r.tokenCount());
+        r.sentenceLengthCounts.forEach((len, n) -> sentenceLengthCounts.merge(len, n, Integer::sum));
+    }
+
+    /**
+     * Adds the words of r with their counts.
+     * @return global id per local id of r.dictionary
+     */
+    public int[] mergeWords(Tokenizer.Result r) {
+        WordDictionary from = r.dictionary;
+        int[] stripes = new int[from.size()];
+        for (int id = 0; id < stripes.length; id++) stripes[id] = wordStripe(from.word(id));
+
+        int[] map = new int[stripes.length];
+        Groups groups = new Groups(stripes);
+        for (int s = 0; s < SHARDS; s++) {
+            if (groups.isEmpty(s)) continue;
+            WordDictionary into = words[s];
+            synchronized (into) {
+                for (int i = groups.start(s); i < groups.end(s); i++) {
+                    int id = groups.item(i);
+                    int local = into.add(from.word(id));
+                    into.addCounts(local, from.totalOccurrences(id), from.startSentenceCount(id),
+                            from.endSequenceCount(id));
+                    map[id] = local << SHARD_BITS | s;
+                }
+            }
+        }
+        return map;
+    }
+
+    /** Adds from's counts under the global keys; returns the global slot per slot of from. */
+    private static int[] mergeNgrams(NgramCounter[] stripes, NgramCounter from, long[] keys) {
+        int[] stripeOf = new int[keys.length];
+        for (int slot = 0; slot < keys.length; slot++) stripeOf[slot] = ngramStripe(keys[slot]);
+
+        int[] map = new int[keys.length];
+        Groups groups = new Groups(stripeOf);
+        for (int s = 0; s < SHARDS; s++) {
+            if (groups.isEmpty(s)) continue;
+            NgramCounter into = stripes[s];
+            synchronized (into) {
+                for (int i = groups.start(s); i < groups.end(s); i++) {
+                    int slot = groups.item(i);
+                    map[slot] = into.add(keys[slot], from.count(slot), from.endCount(slot)) << SHARD_BITS | s;
+                }
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Moves all totals into target (normally an empty Result with the same n-gram order and exact
+     * trigrams), re-encoding the global ids as target's local ids. Call once, after every merge has
+     * returned; the stripes are released as they are copied.
+     */
+    public void drainInto(Tokenizer.Result target) {
+        if (target.topTrigrams != null) {
+            throw new IllegalArgumentException("approximate trigrams must be merged into the Result directly");
+        }
+        int[][] wordMap = new int[SHARDS][];
+        for (int s = 0; s < SHARDS; s++) {
+            WordDictionary from = words[s];
+            wordMap[s] = new int[from.size()];
+            for (int id = 0; id < from.size(); id++) {
+                int into = target.dictionary.add(from.word(id));
+                target.dictionary.addCounts(into, from.totalOccurrences(id), from.startSentenceCount(id),
+                        from.endSequenceCount(id));
+                wordMap[s][id] = into;
+            }
+            words[s] = null;
+        }
+
+        int[][] prefixMap = null;
+        for (int k = 2; k <= Math.min(maxOrder, target.maxOrder()); k++) {
+            NgramCounter into = target.ngramCounts(k);
+            int[][] slotMap = new int[SHARDS][];
+            for (int s = 0; s < SHARDS; s++) {
+                NgramCounter from = ngrams[k][s];
+                slotMap[s] = new int[from.size()];
+                for (int slot = 0; slot < from.size(); slot++) {
+                    long key = from.key(slot);
+                    int first = translate(k == 2 ? wordMap : prefixMap, NgramCounter.high(key));
+                    slotMap[s][slot] = into.add(NgramCounter.pack(first, translate(wordMap, NgramCounter.low(key))),
+                            from.count(slot), from.endCount(slot));
+                }
+                ngrams[k][s] = null;
+            }
+            prefixMap = slotMap;
+        }
+
+        target.addTokenCount(tokenCount.get());
+        sentenceLengthCounts.forEach((len, n) -> target.sentenceLengthCounts.merge(len, n, Integer::sum));
+    }
+
+    private static int translate(int[][] map, int globalId) {
+        return map[globalId & SHARD_MASK][globalId >>> SHARD_BITS];
+    }
+
+    // stripes come from the top bits: the stripes' own hash tables index by the low bits
+    private static int wordStripe(String word) {
+        return (word.hashCode() * 0x9E3779B9) >>> (32 - SHARD_BITS);
+    }
+
+    private static int ngramStripe(long key) {
+        return (int) ((key * 0xC2B2AE3D27D4EB4FL) >>> (64 - SHARD_BITS));
+    }
+
+    /** Item indices grouped by stripe (a counting sort), so each stripe is locked once per merge. */
+    private static final class Groups {
+        private final int[] starts = new int[SHARDS + 1];
+        private final int[] items;
+
+        Groups(int[] stripeOf) {
+            for (int s : stripeOf) starts[s + 1]++;
+            for (int s = 0; s < SHARDS; s++) starts[s + 1] += starts[s];
+            int[] next = Arrays.copyOf(starts, SHARDS);
+            items = new int[stripeOf.length];
+            for (int i = 0; i < stripeOf.length; i++) items[next[stripeOf[i]]++] = i;
+        }
+
+        boolean isEmpty(int s) {
+            return starts[s] == starts[s + 1];
+        }
+
+        int start(int s) {
+            return starts[s];
+        }
+
+        int end(int s) {
+            return starts[s + 1];
+        }
+
+        int item(int i) {
+            return items[i];
+        }
+    }
+}
@@ -13,17 +13,26 @@
 
 package org.utd.cs.sentencebuilder;
 
+import com.mysql.cj.jdbc.JdbcStatement;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.ObjIntConsumer;
 
 
-public class DatabaseManager {
+public class DatabaseManager implements WordIdCache.Store {
     private static final Logger logger = LoggerFactory.getLogger(DatabaseManager.class);
     private static final HikariDataSource dataSource;
 
@@ -67,6 +76,25 @@ public class DatabaseManager {
         return dataSource.getConnection();
     }
 
+    /**
+     * Prepares a query that reads a whole table with Connector/J row streaming (a forward-only,
+     * read-only statement with fetch size Integer.MIN_VALUE): rows are decoded as they come off
+     * the socket instead of the driver buffering the entire result set first, so a full-table
+     * load needs only the memory of what the caller keeps. Until the result set is closed the
+     * connection can run nothing else, so callers only decode rows while iterating; the driver
+     * raises net_write_timeout for the duration (netTimeoutForStreamingResults).
+     */
+    private static PreparedStatement streamingQuery(Connection conn, String sql) throws SQLException {
+        PreparedStatement pstmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pstmt.setFetchSize(Integer.MIN_VALUE);
+        return pstmt;
+    }
+
+    /** maximumPoolSize of the pool (pool.properties): how many connections can work at once. */
+    public int getMaxPoolSize() {
+        return dataSource.getMaximumPoolSize();
+    }
+
     // Public-facing connection getter for external classes (e.g., sentence generators)
     public Connection getConnection() throws SQLException {
         return getConnect();
@@ -75,64 +103,109 @@ public class DatabaseManager {
 
 
 
+    /**
+     * A table of the schema: its columns (with the primary key) and the secondary keys and foreign
+     * keys, kept apart so a rebuild can load the table first and add them afterwards. In
+     * constraints, %s follows each referenced table's name (empty, or the rebuild suffix).
+     */
+    private record TableDef(String name, String columns, List<String> constraints) {
+        String create(String suffix) {
+            StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(name).append(suffix)
+                    .append(" (").append(columns);
+            for (String c : constraints) sql.append(", ").append(c.formatted(suffix));
+            return sql.append(")").toString();
+        }
+    }
+
+    private static final List<TableDef> SCHEMA = List.of(
+            new TableDef("source_file",
+                    "file_id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "file_name VARCHAR(255) NOT NULL," +
+                    "word_count INT NOT NULL," +
+                    "import_timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL",
+                    List.of("UNIQUE KEY file_name (file_name)")),
+
+            // size, mtime and content hash of each imported file (see FileFingerprint)
+            new TableDef("source_fingerprint",
+                    "file_id INT PRIMARY KEY," +
+                    "file_size BIGINT NOT NULL," +
+                    "modified_millis BIGINT NOT NULL," +
+                    "content_hash BINARY(32) NOT NULL",
+                    List.of("FOREIGN KEY (file_id) REFERENCES source_file%s(file_id) ON DELETE CASCADE",
+                            "KEY content (content_hash)")),
+
+            // files of an import whose words are stored but whose n-grams are not yet (see ImportJournal)
+            new TableDef("import_pending",
+                    "file_id INT PRIMARY KEY," +
+                    "batch_id CHAR(36) NOT NULL",
+                    List.of("FOREIGN KEY (file_id) REFERENCES source_file%s(file_id) ON DELETE CASCADE",
+                            "KEY batch (batch_id)")),
+
+            // journal chunks already applied, so a replay after a crash applies each chunk exactly once
+            new TableDef("import_progress",
+                    "batch_id CHAR(36) NOT NULL," +
+                    "part INT NOT NULL," +
+                    "chunk INT NOT NULL," +
+                    "PRIMARY KEY (batch_id, part, chunk)",
+                    List.of()),
+
+            new TableDef("words",
+                    "word_id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "word_value VARCHAR(255) NOT NULL," +
+                    "total_occurrences INT DEFAULT 1 NOT NULL," +
+                    "start_sentence_count INT DEFAULT 0 NOT NULL," +
+                    "end_sequence_count INT DEFAULT 0 NOT NULL",
+                    List.of("UNIQUE KEY word_value (word_value)")),
+
+            new TableDef("word_pairs",
+                    "sequence_id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "preceding_word_id INT NOT NULL," +
+                    "following_word_id INT NOT NULL," +
+                    "occurrence_count INT DEFAULT 1 NOT NULL," +
+                    "bi_end_frequency INT DEFAULT 0 NOT NULL",
+                    List.of("FOREIGN KEY (preceding_word_id) REFERENCES words%s(word_id) ON DELETE CASCADE",
+                            "FOREIGN KEY (following_word_id) REFERENCES words%s(word_id) ON DELETE CASCADE",
+                            "UNIQUE KEY unique_pair (preceding_word_id, following_word_id)",
+                            // followers of each word by count, read in order by getBigramFollowers()
+                            "KEY followers (preceding_word_id, occurrence_count DESC, following_word_id)")),
+
+            new TableDef("trigram_sequence",
+                    "sequence_id INT AUTO_INCREMENT PRIMARY KEY," +
+                    "first_word_id INT NOT NULL," +
+                    "second_word_id INT NOT NULL," +
+                    "third_word_id INT NOT NULL," +
+                    "follows_count INT DEFAULT 1 NOT NULL," +
+                    "tri_end_frequency INT DEFAULT 0 NOT NULL",
+                    List.of("FOREIGN KEY (first_word_id) REFERENCES words%s(word_id) ON DELETE CASCADE",
+                            "FOREIGN KEY (second_word_id) REFERENCES words%s(word_id) ON DELETE CASCADE",
+                            "FOREIGN KEY (third_word_id) REFERENCES words%s(word_id) ON DELETE CASCADE",
+                            "UNIQUE KEY unique_trigram (first_word_id, second_word_id, third_word_id)",
+                            "KEY followers (first_word_id, second_word_id, follows_count DESC, third_word_id)")),
+
+            // 4-grams and 5-grams: the n-1 context ids packed as in NgramKey, then the next word
+            new TableDef("ngram_sequence",
+                    "sequence_id BIGINT AUTO_INCREMENT PRIMARY KEY," +
+                    "ngram_order TINYINT NOT NULL," +
+                    "context_ids BINARY(16) NOT NULL," +
+                    "next_word_id INT NOT NULL," +
+                    "follows_count INT DEFAULT 1 NOT NULL," +
+                    "end_frequency INT DEFAULT 0 NOT NULL",
+                    List.of("FOREIGN KEY (next_word_id) REFERENCES words%s(word_id) ON DELETE CASCADE",
+                            "UNIQUE KEY unique_ngram (ngram_order, context_ids, next_word_id)",
+                            "KEY followers (ngram_order, context_ids, follows_count DESC, next_word_id)")));
+
     /**
      * Creates the database schema.
      * This method is idempotent; it won't fail if the tables already exist.
      */
     public void buildDatabase() throws SQLException{
-        String createSourceFileTable =
-                "CREATE TABLE IF NOT EXISTS source_file (" +
-                "file_id INT AUTO_INCREMENT PRIMARY KEY," +
-                "file_name VARCHAR(255) UNIQUE NOT NULL," +
-                "word_count INT NOT NULL," +
-                "import_timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL" +
-                ");";
-
-        String createWordsTable =
-                "CREATE TABLE IF NOT EXISTS words (" +
-                "word_id INT AUTO_INCREMENT PRIMARY KEY," +
-                "word_value VARCHAR(255) UNIQUE NOT NULL," +
-                "total_occurrences INT DEFAULT 1 NOT NULL," +
-                "start_sentence_count INT DEFAULT 0 NOT NULL," +
-                "end_sequence_count INT DEFAULT 0 NOT NULL" +
-                ");";
-
-        String createWordPairsTable =
-                "CREATE TABLE IF NOT EXISTS word_pairs (" +
-                "sequence_id INT AUTO_INCREMENT PRIMARY KEY," +
-                "preceding_word_id INT NOT NULL," +
-                "following_word_id INT NOT NULL," +
-                "occurrence_count INT DEFAULT 1 NOT NULL," +
-                "bi_end_frequency INT DEFAULT 0 NOT NULL," +
-                "FOREIGN KEY (preceding_word_id) REFERENCES words(word_id) ON DELETE CASCADE," +
-                "FOREIGN KEY (following_word_id) REFERENCES words(word_id) ON DELETE CASCADE," +
-                "UNIQUE KEY unique_pair (preceding_word_id, following_word_id)" +
-                ");";
-
-        String createTrigramSequenceTable =
-                "CREATE TABLE IF NOT EXISTS trigram_sequence (" +
-                "sequence_id INT AUTO_INCREMENT PRIMARY KEY," +
-                "first_word_id INT NOT NULL," +
-                "second_word_id INT NOT NULL," +
-                "third_word_id INT NOT NULL," +
-                "follows_count INT DEFAULT 1 NOT NULL," +
-                "tri_end_frequency INT DEFAULT 0 NOT NULL," +
-                "FOREIGN KEY (first_word_id) REFERENCES words(word_id) ON DELETE CASCADE," +
-                "FOREIGN KEY (second_word_id) REFERENCES words(word_id) ON DELETE CASCADE," +
-                "FOREIGN KEY (third_word_id) REFERENCES words(word_id) ON DELETE CASCADE," +
-                "UNIQUE KEY unique_trigram (first_word_id, second_word_id, third_word_id)" +
-                ");";
-
         try (Connection conn = getConnect(); Statement stmt = conn.createStatement()) {
             logger.info("Building database schema...");
-            stmt.execute(createSourceFileTable);
-            logger.info("Table 'source_file' created or already exists.");
-            stmt.execute(createWordsTable);
-            logger.info("Table 'words' created or already exists.");
-            stmt.execute(createWordPairsTable);
-            logger.info("Table 'word_pairs' created or already exists.");
-            stmt.execute(createTrigramSequenceTable);
-            logger.info("Table 'trigram_sequence' created or already exists.");
+            for (TableDef table : SCHEMA) {
+                stmt.execute(table.create(""));
+                logger.info("Table '{}' created or already exists.", table.name());
+                addMissingKeys(conn, table);
+            }
             logger.info("Database build complete.");
         } catch (SQLException e) {
             logger.error("Database build failed.", e);
@@ -140,6 +213,30 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Adds the plain (non-unique) keys of table that an existing table was created without, e.g. a
+     * key added to the schema after the table was built. Unique keys and foreign keys are left alone.
+     */
+    private void addMissingKeys(Connection conn, TableDef table) throws SQLException {
+        String sql = "SELECT 1 FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND INDEX_NAME = ? LIMIT 1";
+        for (String c : table.constraints()) {
+            if (!c.startsWith("KEY ")) continue;
+            String key = c.substring(4, c.indexOf(' ', 4));
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setString(1, table.name());
+                pstmt.setString(2, key);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) continue;
+                }
+            }
+            logger.info("Adding key '{}' to table '{}'.", key, table.name());
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ALTER TABLE " + table.name() + " ADD " + c.formatted(""));
+            }
+        }
+    }
+
     /**
      * Adds a new source file record to the database.
      *
@@ -170,6 +267,188 @@ public class DatabaseManager {
         }
     }
 
+    /**
+     * Checks whether a file has been imported, with one lookup on the unique file_name index.
+     *
+     * @param fileName The name of the file.
+     * @return true if source_file has a row for it.
+     * @throws SQLException if a database access error occurs.
+     */
+    public boolean isFileImported(String fileName) throws SQLException {
+        String sql = "SELECT 1 FROM source_file WHERE file_name = ? LIMIT 1";
+        try (Connection conn = getConnect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, fileName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Records an imported file with its fingerprint. A file_name that is already there gets the new
+     * word count, timestamp and fingerprint (ImporterCli never imports a changed file again).
+     *
+     * @param fileName    The name of the file being imported.
+     * @param wordCount   The total number of words in the file.
+     * @param fingerprint The file's size, modification time and content hash.
+     * @return The file_id of the record.
+     * @throws SQLException if a database access error occurs.
+     */
+    public int recordSourceFile(String fileName, long wordCount, FileFingerprint fingerprint) throws SQLException {
+        logger.info("Recording source file: {}", fileName);
+        int fileId = inTransaction(conn -> recordSourceFileOn(conn, "", fileName, wordCount, fingerprint));
+        logger.info("Recorded source file '{}' with file_id {}.", fileName, fileId);
+        return fileId;
+    }
+
+    /** source_file.word_count is an INT; a file with more tokens is recorded as Integer.MAX_VALUE. */
+    private static int wordCountColumn(long wordCount) {
+        return (int) Math.min(wordCount, Integer.MAX_VALUE);
+    }
+
+    // suffix selects the tables (the rebuild copies have no unique key, so there the upserts just insert)
+    private static int recordSourceFileOn(Connection conn, String suffix, String fileName, long wordCount,
+                                          FileFingerprint fingerprint) throws SQLException {
+        // LAST_INSERT_ID(file_id) makes an update report the existing id as the generated key
+        String upsertFile = "INSERT INTO source_file" + suffix + "(file_name, word_count) VALUES(?, ?) " +
+                "ON DUPLICATE KEY UPDATE file_id = LAST_INSERT_ID(file_id), word_count = VALUES(word_count), " +
+                "import_timestamp = CURRENT_TIMESTAMP";
+        String upsertFingerprint = "INSERT INTO source_fingerprint" + suffix +
+                " (file_id, file_size, modified_millis, content_hash) " +
+                "VALUES (?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE file_size = VALUES(file_size), modified_millis = VALUES(modified_millis), " +
+                "content_hash = VALUES(content_hash)";
+
+        try (PreparedStatement file = conn.prepareStatement(upsertFile, Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement print = conn.prepareStatement(upsertFingerprint)) {
+            file.setString(1, fileName);
+            file.setInt(2, wordCountColumn(wordCount));
+            file.executeUpdate();
+            int fileId;
+            try (ResultSet generatedKeys = file.getGeneratedKeys()) {
+                if (!generatedKeys.next()) throw new SQLException("Recording source file failed, no ID obtained.");
+                fileId = generatedKeys.getInt(1);
+            }
+
+            print.setInt(1, fileId);
+            print.setLong(2, fingerprint.size());
+            print.setLong(3, fingerprint.modifiedMillis());
+            print.setBytes(4, fingerprint.contentHash());
+            print.executeUpdate();
+            return fileId;
+        }
+    }
+
+    /**
+     * Stores one file's words and records the file, as one transaction: its words (word_id set on
+     * each, counts added to existing rows), its source_file and source_fingerprint rows and,
+     * if batchId is not null, an import_pending row saying its n-grams are still to be written by
+     * that batch. A crash leaves all of it or none of it; a deadlock retries the whole file.
+     *
+     * @return The file_id of the record.
+     * @throws SQLException if a database access error occurs.
+     */
+    public int importFile(String fileName, long wordCount, FileFingerprint fingerprint, Collection<Word> words,
+                          String batchId) throws SQLException {
+        String markPending = "INSERT INTO import_pending (file_id, batch_id) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE batch_id = VALUES(batch_id)";
+        logger.info("Importing {} words of source file {}.", words.size(), fileName);
+        return inTransaction(conn -> {
+            batchOn(conn, UPSERT_WORD_WITH_ID, words, WORD_WITH_ID);
+            int fileId = recordSourceFileOn(conn, "", fileName, wordCount, fingerprint);
+            if (batchId != null) {
+                try (PreparedStatement pstmt = conn.prepareStatement(markPending)) {
+                    pstmt.setInt(1, fileId);
+                    pstmt.setString(2, batchId);
+                    pstmt.executeUpdate();
+                }
+            }
+            return fileId;
+        });
+    }
+
+    /**
+     * Stores the fingerprint of a file that is already recorded (e.g. a file imported before
+     * fingerprints existed, or one whose modification time changed but whose content did not).
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public void updateFingerprint(String fileName, FileFingerprint fingerprint) throws SQLException {
+        String sql = "INSERT INTO source_fingerprint (file_id, file_size, modified_millis, content_hash) " +
+                "SELECT file_id, ?, ?, ? FROM source_file WHERE file_name = ? " +
+                "ON DUPLICATE KEY UPDATE file_size = VALUES(file_size), modified_millis = VALUES(modified_millis), " +
+                "content_hash = VALUES(content_hash)";
+        try (Connection conn = getConnect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setLong(1, fingerprint.size());
+            pstmt.setLong(2, fingerprint.modifiedMillis());
+            pstmt.setBytes(3, fingerprint.contentHash());
+            pstmt.setString(4, fileName);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Fingerprints of all recorded files, by file_name, in one query. Files recorded before
+     * fingerprints existed map to null.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public Map<String, FileFingerprint> getFingerprints() throws SQLException {
+        String sql = "SELECT s.file_name, f.file_size, f.modified_millis, f.content_hash " +
+                "FROM source_file s LEFT JOIN source_fingerprint f ON f.file_id = s.file_id";
+        Map<String, FileFingerprint> fingerprints = new HashMap<>();
+        try (Connection conn = getConnect();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                fingerprints.put(rs.getString(1), readFingerprint(rs));
+            }
+        }
+        logger.info("Retrieved fingerprints of {} source files.", fingerprints.size());
+        return fingerprints;
+    }
+
+    /**
+     * Fingerprint of one recorded file (an indexed lookup).
+     *
+     * @return the fingerprint, or null if the file is not recorded or has none.
+     * @throws SQLException if a database access error occurs.
+     */
+    public FileFingerprint getFingerprint(String fileName) throws SQLException {
+        String sql = "SELECT s.file_name, f.file_size, f.modified_millis, f.content_hash " +
+                "FROM source_file s JOIN source_fingerprint f ON f.file_id = s.file_id WHERE s.file_name = ?";
+        try (Connection conn = getConnect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, fileName);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readFingerprint(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * Name of a recorded file with exactly this content (an indexed lookup on content_hash).
+     *
+     * @return the file_name, or null if no recorded file has this size and hash.
+     * @throws SQLException if a database access error occurs.
+     */
+    public String findFileByContent(FileFingerprint fingerprint) throws SQLException {
+        String sql = "SELECT s.file_name FROM source_fingerprint f JOIN source_file s ON s.file_id = f.file_id " +
+                "WHERE f.content_hash = ? AND f.file_size = ? LIMIT 1";
+        try (Connection conn = getConnect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setBytes(1, fingerprint.contentHash());
+            pstmt.setLong(2, fingerprint.size());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+
+    // columns 2..4 of a fingerprint query; null when the LEFT JOIN found none
+    private static FileFingerprint readFingerprint(ResultSet rs) throws SQLException {
+        byte[] hash = rs.getBytes(4);
+        return hash == null ? null : new FileFingerprint(rs.getLong(2), rs.getLong(3), hash);
+    }
+
     /**
      * Retrieves all source files from the database and returns them as a map.
      *
@@ -246,7 +525,7 @@ public class DatabaseManager {
     }
 
     /**
-     * Inserts or updates a collection of words in a single batch operation.
+     * Inserts or updates a collection of words in batches of {@link #getBatchSize()} rows.
      *
      * @param wordCollection A collection of Word objects with aggregated data.
      * @throws SQLException if a database access error occurs.
@@ -263,18 +542,13 @@ public class DatabaseManager {
                 "start_sentence_count = start_sentence_count + VALUES(start_sentence_count), " +
                 "end_sequence_count = end_sequence_count + VALUES(end_sequence_count)";
 
-        try (Connection conn = getConnect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            for (Word stats : wordCollection) {
-                pstmt.setString(1, stats.getWordValue());
-                pstmt.setInt(2, stats.getTotalOccurrences());
-                pstmt.setInt(3, stats.getStartSentenceCount());
-                pstmt.setInt(4, stats.getEndSequenceCount());
-                pstmt.addBatch();
-            }
-            pstmt.executeBatch();
-            logger.info("Batch execution for words complete.");
-        }
+        executeInChunks(sql, wordCollection, (pstmt, stats) -> {
+            pstmt.setString(1, stats.getWordValue());
+            pstmt.setInt(2, stats.getTotalOccurrences());
+            pstmt.setInt(3, stats.getStartSentenceCount());
+            pstmt.setInt(4, stats.getEndSequenceCount());
+        });
+        logger.info("Batch execution for words complete.");
     }
 
     /**
@@ -302,38 +576,196 @@ public class DatabaseManager {
     }
 
     /**
-     * Retrieves a map of word strings to their corresponding word_ids in a single query.
+     * Words per lookup query. Each word is bound twice (FIELD and IN), and MySQL allows at most
+     * 65,535 placeholders per statement.
+     */
+    public static final int ID_LOOKUP_CHUNK = 5_000;
+    // lookups run at the same time, each on its own pooled connection
+    private static final int ID_LOOKUP_THREADS = 4;
+
+    /**
+     * Looks up the word_id of every word, in chunks of ID_LOOKUP_CHUNK queried in parallel.
+     * Memory beyond the result is one chunk per thread, however large the vocabulary.
      *
-     * @param words A collection of Word objects to look up.
-     * @return A Map where keys are the word strings and values are their database IDs.
+     * @param words The words to look up.
+     * @return word_id per position of words, or -1 where the word is not in the table.
      * @throws SQLException if a database access error occurs.
      */
-    public Map<String, Integer> getWordIds(Collection<Word> words) throws SQLException {
-        Map<String, Integer> wordIdMap = new HashMap<>();
-        if (words == null || words.isEmpty()) {
-            return wordIdMap;
+    @Override
+    public int[] resolveWordIds(List<String> words) throws SQLException {
+        int[] ids = new int[words.size()];
+        Arrays.fill(ids, -1);
+        if (ids.length == 0) return ids;
+        logger.debug("Querying for word_ids of {} words.", ids.length);
+
+        List<Future<?>> lookups = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(ID_LOOKUP_THREADS)) {
+            for (int from = 0; from < ids.length; from += ID_LOOKUP_CHUNK) {
+                int start = from;
+                int end = Math.min(ids.length, from + ID_LOOKUP_CHUNK);
+                lookups.add(pool.submit(() -> {
+                    lookupChunk(words, start, end, ids);
+                    return null;
+                }));
+            }
+            for (Future<?> lookup : lookups) lookup.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            throw new SQLException("word_id lookup failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("word_id lookup interrupted", e);
         }
-        logger.debug("Querying for word_ids of {} words.", words.size());
 
-        String placeholders = String.join(",", java.util.Collections.nCopies(words.size(), "?"));
-        String sql = "SELECT word_value, word_id FROM words WHERE word_value IN (" + placeholders + ")";
+        logger.debug("Resolved word_ids for {} words.", ids.length);
+        return ids;
+    }
 
-        try (Connection conn = getConnect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            int i = 1;
-            for (Word word : words) {
-                pstmt.setString(i++, word.getWordValue());
+    /**
+     * Fills ids[start, end) for words[start, end) with IN (...) queries. Rows are matched to the
+     * requested words by position, with FIELD() comparing in the column's collation, so a word is
+     * found even when the table spells it differently (e.g. "cafe" for "café"). FIELD() only
+     * reports the first equal word, so words that share a row with an earlier one are looked up
+     * again in another round.
+     */
+    private void lookupChunk(List<String> words, int start, int end, int[] ids) throws SQLException {
+        int[] open = new int[end - start]; // positions still unresolved
+        int count = 0;
+        for (int i = start; i < end; i++) open[count++] = i;
+
+        try (Connection conn = getConnect()) {
+            while (count > 0) {
+                String placeholders = String.join(",", Collections.nCopies(count, "?"));
+                String sql = "SELECT FIELD(word_value, " + placeholders + "), word_id FROM words " +
+                        "WHERE word_value IN (" + placeholders + ")";
+                int found = 0;
+                try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                    for (int j = 0; j < count; j++) {
+                        pstmt.setString(j + 1, words.get(open[j]));
+                        pstmt.setString(count + j + 1, words.get(open[j]));
+                    }
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            int field = rs.getInt(1);
+                            if (field > 0) {
+                                ids[open[field - 1]] = rs.getInt(2);
+                                found++;
+                            }
+                        }
+                    }
+                }
+                if (found == 0) break;
+
+                int left = 0;
+                for (int j = 0; j < count; j++) {
+                    if (ids[open[j]] < 0) open[left++] = open[j];
+                }
+                count = left;
             }
+        }
+    }
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    wordIdMap.put(rs.getString("word_value"), rs.getInt("word_id"));
+    /** Receives one row of the words table from {@link #scanWords}. */
+    public interface WordRow {
+        void accept(int wordId, String wordValue, int startSentenceCount);
+    }
+
+    /**
+     * Streams every word with its id and start_sentence_count to consumer in one read of the
+     * table, so a caller can build all of its word indexes in a single pass (see
+     * GeneratorController.load).
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public void scanWords(WordRow consumer) throws SQLException {
+        logger.info("Scanning the words table.");
+        String sql = "SELECT word_id, word_value, start_sentence_count FROM words";
+        int rows = 0;
+        try (Connection conn = getConnect();
+             PreparedStatement pstmt = streamingQuery(conn, sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                consumer.accept(rs.getInt(1), rs.getString(2), rs.getInt(3));
+                rows++;
+            }
+        } catch (SQLException e) {
+            logger.error("Failed to scan the words table.", e);
+            throw e;
+        }
+        logger.info("Scanned {} words.", rows);
+    }
+
+    /**
+     * Streams every (word_value, word_id) row to consumer without building a map,
+     * e.g. to fill a WordIdCache.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Override
+    public void scanWordIds(ObjIntConsumer<String> consumer) throws SQLException {
+        String sql = "SELECT word_value, word_id FROM words";
+        try (Connection conn = getConnect();
+             PreparedStatement pstmt = streamingQuery(conn, sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                consumer.accept(rs.getString(1), rs.getInt(2));
+            }
+        }
+    }
+
+    /**
+     * Reserves count consecutive word_ids for a client that assigns ids itself (WordIdCache).
+     * The range starts above every id in use and above the AUTO_INCREMENT counter, which is then
+     * moved past it, so neither plain inserts nor other reservations can take those ids.
+     * Reservations are serialized with a named lock.
+     *
+     * @return the first reserved id; the range is [first, first + count).
+     * @throws SQLException if a database access error occurs or the lock is not granted.
+     */
+    @Override
+    public int reserveWordIds(int count) throws SQLException {
+        try (Connection conn = getConnect(); Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT GET_LOCK('sentencebuilder.word_ids', 30)")) {
+                if (!rs.next() || rs.getInt(1) != 1) throw new SQLException("Could not lock the word_id allocator.");
+            }
+            try {
+                // information_schema caches AUTO_INCREMENT unless told not to
+                stmt.execute("SET SESSION information_schema_stats_expiry = 0");
+                long first = 1;
+                try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(word_id), 0) + 1 FROM words")) {
+                    if (rs.next()) first = rs.getLong(1);
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT AUTO_INCREMENT FROM information_schema.TABLES " +
+                        "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'words'")) {
+                    if (rs.next()) first = Math.max(first, rs.getLong(1));
                 }
+                if (first + count > Integer.MAX_VALUE) throw new SQLException("word_id range exhausted.");
+                stmt.execute("ALTER TABLE words AUTO_INCREMENT = " + (first + count));
+                logger.info("Reserved word_ids {} .. {}.", first, first + count - 1);
+                return (int) first;
+            } finally {
+                stmt.executeQuery("SELECT RELEASE_LOCK('sentencebuilder.word_ids')").close();
             }
         }
-        logger.debug("Retrieved {} word_ids.", wordIdMap.size());
-        return wordIdMap;
     }
 
+    // words whose word_id is already known (set on each Word); counts are added to existing rows
+    private static final String UPSERT_WORD_WITH_ID =
+            "INSERT INTO words (word_id, word_value, total_occurrences, start_sentence_count, end_sequence_count) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "total_occurrences = total_occurrences + VALUES(total_occurrences), " +
+            "start_sentence_count = start_sentence_count + VALUES(start_sentence_count), " +
+            "end_sequence_count = end_sequence_count + VALUES(end_sequence_count)";
+
+    private static final RowBinder<Word> WORD_WITH_ID = (pstmt, stats) -> {
+        pstmt.setInt(1, stats.getWordId());
+        pstmt.setString(2, stats.getWordValue());
+        pstmt.setInt(3, stats.getTotalOccurrences());
+        pstmt.setInt(4, stats.getStartSentenceCount());
+        pstmt.setInt(5, stats.getEndSequenceCount());
+    };
+
     /**
      * Retrieves a map of ALL word strings to their corresponding word_ids.
      *
@@ -350,7 +782,7 @@ public class DatabaseManager {
 
         // Use try-with-resources to ensure all resources are closed
         try (Connection conn = getConnect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = streamingQuery(conn, sql);
              ResultSet rs = pstmt.executeQuery()) { // No parameters to set
 
             while (rs.next()) {
@@ -431,7 +863,7 @@ public class DatabaseManager {
         String sql = "SELECT word_id, word_value, total_occurrences, start_sentence_count, end_sequence_count FROM words";
 
         try (Connection conn = getConnect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = streamingQuery(conn, sql);
              ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
@@ -459,7 +891,7 @@ public class DatabaseManager {
                 """;
 
         try (Connection conn = getConnect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = streamingQuery(conn, sql);
              ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
                 wordMap.put(rs.getInt("word_id"), rs.getString("word_value"));
@@ -511,37 +943,20 @@ public class DatabaseManager {
     }
 
     /**
-     * Inserts or updates a collection of word pairs in a single batch operation.
+     * Inserts or updates a collection of word pairs in batches of {@link #getBatchSize()} rows.
      *
      * @param wordPairs A collection of WordPair objects to be added or updated.
      * @throws SQLException if a database access error occurs.
      */
     public void bulkAddWordPairs(Collection<WordPair> wordPairs) throws SQLException {
-        String sql = "INSERT INTO word_pairs (preceding_word_id, following_word_id, occurrence_count, bi_end_frequency) " +
-                "VALUES (?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE " +
-                "occurrence_count = occurrence_count + VALUES(occurrence_count), " +
-                "bi_end_frequency = bi_end_frequency + VALUES(bi_end_frequency)";
-
-        try (Connection conn = getConnect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-            if (wordPairs == null || wordPairs.isEmpty()) {
-                logger.info("Word pairs collection is empty. No action taken.");
-                return;
-            }
-
-            for (WordPair pair : wordPairs) {
-                pstmt.setInt(1, pair.getPrecedingWordId());
-                pstmt.setInt(2, pair.getFollowingWordId());
-                pstmt.setInt(3, pair.getOccurrenceCount());
-                pstmt.setInt(4, pair.getEndFrequency());
-                pstmt.addBatch();
-            }
-            logger.info("Executing batch insert/update for {} word pairs.", wordPairs.size());
-            pstmt.executeBatch();
-            logger.info("Batch execution for word pairs complete.");
+        if (wordPairs == null || wordPairs.isEmpty()) {
+            logger.info("Word pairs collection is empty. No action taken.");
+            return;
         }
+
+        logger.info("Executing batch insert/update for {} word pairs.", wordPairs.size());
+        executeInChunks(WORD_PAIRS.upsert(), wordPairs, WORD_PAIRS.binder());
+        logger.info("Batch execution for word pairs complete.");
     }
 
     /**
@@ -556,7 +971,7 @@ public class DatabaseManager {
         String sql = "SELECT sequence_id, preceding_word_id, following_word_id, occurrence_count, bi_end_frequency FROM word_pairs";
 
         try (Connection conn = getConnect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = streamingQuery(conn, sql);
              ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
@@ -577,113 +992,738 @@ public class DatabaseManager {
         return allPairs;
     }
 
-    public Map<Integer, List<int[]>> getBigramMap() throws SQLException {
-        logger.info("Retrieving bigram mapping.");
+    /**
+     * Loads the followers of every word from word_pairs, read in the order of the followers key
+     * (preceding word, count descending) so each word's followers arrive together and already
+     * sorted, and are appended to the table as they stream in.
+     *
+     * @return per preceding_word_id its following word ids and counts, most frequent first.
+     * @throws SQLException if a database access error occurs.
+     */
+    public FollowerTable getBigramFollowers() throws SQLException {
+        logger.info("Retrieving bigram followers.");
         String sql = """
                 SELECT preceding_word_id, following_word_id, occurrence_count
                 FROM word_pairs
+                ORDER BY preceding_word_id, occurrence_count DESC, following_word_id
                 """;
 
-        Map<Integer, List<int[]>> bigramMap = new HashMap<>();
-
+        FollowerTable.Builder followers = new FollowerTable.Builder();
         try (Connection conn = getConnect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
+             PreparedStatement pstmt = streamingQuery(conn, sql);
              ResultSet rs = pstmt.executeQuery()) {
 
             while (rs.next()) {
-                int prev  = rs.getInt("preceding_word_id");
-                int next  = rs.getInt("following_word_id");
-                int count = rs.getInt("occurrence_count");
-
-                bigramMap
-                        .computeIfAbsent(prev, k -> new ArrayList<>())
-                        .add(new int[]{ next, count });
+                followers.add(rs.getInt(1), 0, rs.getInt(2), rs.getInt(3));
             }
         } catch (SQLException e) {
-            logger.error("Failed to create bigram map.", e);
+            logger.error("Failed to load bigram followers.", e);
             throw e;
         }
 
-        for (List<int[]> list : bigramMap.values()) {
-            list.sort((x, y) -> Integer.compare(y[1], x[1]));
-        }
-        logger.info("Successfully retrieved {} bigrams.", bigramMap.size());
-        return bigramMap;
+        FollowerTable table = followers.build();
+        logger.info("Successfully retrieved {} bigrams of {} words.", table.rows(), table.contexts());
+        return table;
     }
 
     /**
-     * Inserts or updates a collection of word triplets in a single batch operation.
+     * Inserts or updates a collection of word triplets in batches of {@link #getBatchSize()} rows.
      *
      * @param wordTriplets A collection of WordTriplet objects to be added or updated.
      * @throws SQLException if a database access error occurs.
      */
     public void bulkAddWordTriplets(Collection<WordTriplet> wordTriplets) throws SQLException {
-        String sql = "INSERT INTO trigram_sequence (first_word_id, second_word_id, third_word_id, follows_count, tri_end_frequency) " +
-                "VALUES (?, ?, ?, ?, ?) " +
-                "ON DUPLICATE KEY UPDATE " +
-                "follows_count = follows_count + VALUES(follows_count), " +
-                "tri_end_frequency = tri_end_frequency + VALUES(tri_end_frequency)";
+        if (wordTriplets == null || wordTriplets.isEmpty()) {
+            logger.info("Word triplets collection is empty. No action taken.");
+            return;
+        }
+
+        logger.info("Executing batch insert/update for {} word triplets.", wordTriplets.size());
+        executeInChunks(TRIGRAM_SEQUENCE.upsert(), wordTriplets, TRIGRAM_SEQUENCE.binder());
+        logger.info("Batch execution for word triplets complete.");
+    }
+
+    /**
+     * Loads the followers of every (w1, w2) context from trigram_sequence, in the order of its
+     * followers key, like {@link #getBigramFollowers()}.
+     *
+     * @return per context pack(w1, w2) its third word ids and counts, most frequent first.
+     * @throws SQLException if a database access error occurs.
+     */
+    public FollowerTable getTrigramFollowers() throws SQLException {
+        logger.info("Retrieving trigram followers.");
+        String sql = """
+                SELECT first_word_id, second_word_id, third_word_id, follows_count
+                FROM trigram_sequence
+                ORDER BY first_word_id, second_word_id, follows_count DESC, third_word_id
+                """;
 
+        FollowerTable.Builder followers = new FollowerTable.Builder();
         try (Connection conn = getConnect();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+             PreparedStatement pstmt = streamingQuery(conn, sql);
+             ResultSet rs = pstmt.executeQuery()) {
 
-            if (wordTriplets == null || wordTriplets.isEmpty()) {
-                logger.info("Word triplets collection is empty. No action taken.");
-                return;
+            while (rs.next()) {
+                followers.add(NgramCounter.pack(rs.getInt(1), rs.getInt(2)), 0, rs.getInt(3), rs.getInt(4));
             }
+        } catch (SQLException e) {
+            logger.error("Failed to load trigram followers.", e);
+            throw e;
+        }
+
+        FollowerTable table = followers.build();
+        logger.info("Successfully retrieved {} trigrams of {} contexts.", table.rows(), table.contexts());
+        return table;
+    }
 
-            for (WordTriplet triplet : wordTriplets) {
+    /**
+     * Inserts or updates a collection of 4-grams / 5-grams in batches of {@link #getBatchSize()} rows.
+     *
+     * @param wordNgrams A collection of WordNgram objects to be added or updated.
+     * @throws SQLException if a database access error occurs.
+     */
+    public void bulkAddWordNgrams(Collection<WordNgram> wordNgrams) throws SQLException {
+        if (wordNgrams == null || wordNgrams.isEmpty()) {
+            logger.info("Word n-grams collection is empty. No action taken.");
+            return;
+        }
+
+        logger.info("Executing batch insert/update for {} word n-grams.", wordNgrams.size());
+        executeInChunks(NGRAM_SEQUENCE.upsert(), wordNgrams, NGRAM_SEQUENCE.binder());
+        logger.info("Batch execution for word n-grams complete.");
+    }
+
+    // ---- n-gram tables ----
+    // How rows of each n-gram table are written: one upsert per row (batched), or as TSV lines
+    // loaded into a staging table and merged with one INSERT ... SELECT (see loadOn).
+    // Staging columns have their own names so the merge's UPDATE clause is not ambiguous.
+
+    // keyOrder is the order of the table's unique key: chunks are sorted by it before they are
+    // written, so the inserts walk the index in order instead of jumping around in it
+    // insert is the plain INSERT of a rebuild, with %s after the table name for the rebuild suffix
+    private record NgramTable<T>(String upsert, String insert, RowBinder<T> binder, String stageTable, String createStage,
+                                 String load, String merge, BiConsumer<T, StringBuilder> format,
+                                 Comparator<T> keyOrder) {}
+
+    private static final NgramTable<WordPair> WORD_PAIRS = new NgramTable<>(
+            "INSERT INTO word_pairs (preceding_word_id, following_word_id, occurrence_count, bi_end_frequency) " +
+                    "VALUES (?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "occurrence_count = occurrence_count + VALUES(occurrence_count), " +
+                    "bi_end_frequency = bi_end_frequency + VALUES(bi_end_frequency)",
+            "INSERT INTO word_pairs%s (preceding_word_id, following_word_id, occurrence_count, bi_end_frequency) " +
+                    "VALUES (?, ?, ?, ?)",
+            (pstmt, pair) -> {
+                pstmt.setInt(1, pair.getPrecedingWordId());
+                pstmt.setInt(2, pair.getFollowingWordId());
+                pstmt.setInt(3, pair.getOccurrenceCount());
+                pstmt.setInt(4, pair.getEndFrequency());
+            },
+            "word_pairs_stage",
+            "CREATE TEMPORARY TABLE word_pairs_stage (" +
+                    "s_preceding INT NOT NULL, s_following INT NOT NULL, s_count INT NOT NULL, s_end INT NOT NULL)",
+            "LOAD DATA LOCAL INFILE 'word_pairs.tsv' INTO TABLE word_pairs_stage " +
+                    "(s_preceding, s_following, s_count, s_end)",
+            "INSERT INTO word_pairs (preceding_word_id, following_word_id, occurrence_count, bi_end_frequency) " +
+                    "SELECT s_preceding, s_following, s_count, s_end FROM word_pairs_stage " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "occurrence_count = occurrence_count + VALUES(occurrence_count), " +
+                    "bi_end_frequency = bi_end_frequency + VALUES(bi_end_frequency)",
+            (pair, row) -> row
+                    .append(pair.getPrecedingWordId()).append('\t')
+                    .append(pair.getFollowingWordId()).append('\t')
+                    .append(pair.getOccurrenceCount()).append('\t')
+                    .append(pair.getEndFrequency()).append('\n'),
+            Comparator.comparingInt(WordPair::getPrecedingWordId).thenComparingInt(WordPair::getFollowingWordId));
+
+    private static final NgramTable<WordTriplet> TRIGRAM_SEQUENCE = new NgramTable<>(
+            "INSERT INTO trigram_sequence (first_word_id, second_word_id, third_word_id, follows_count, tri_end_frequency) " +
+                    "VALUES (?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "follows_count = follows_count + VALUES(follows_count), " +
+                    "tri_end_frequency = tri_end_frequency + VALUES(tri_end_frequency)",
+            "INSERT INTO trigram_sequence%s (first_word_id, second_word_id, third_word_id, follows_count, " +
+                    "tri_end_frequency) VALUES (?, ?, ?, ?, ?)",
+            (pstmt, triplet) -> {
                 pstmt.setInt(1, triplet.getFirstWordId());
                 pstmt.setInt(2, triplet.getSecondWordId());
                 pstmt.setInt(3, triplet.getThirdWordId());
                 pstmt.setInt(4, triplet.getOccurrenceCount());
                 pstmt.setInt(5, triplet.getEndFrequency());
+            },
+            "trigram_sequence_stage",
+            "CREATE TEMPORARY TABLE trigram_sequence_stage (" +
+                    "s_first INT NOT NULL, s_second INT NOT NULL, s_third INT NOT NULL, s_count INT NOT NULL, s_end INT NOT NULL)",
+            "LOAD DATA LOCAL INFILE 'trigram_sequence.tsv' INTO TABLE trigram_sequence_stage " +
+                    "(s_first, s_second, s_third, s_count, s_end)",
+            "INSERT INTO trigram_sequence (first_word_id, second_word_id, third_word_id, follows_count, tri_end_frequency) " +
+                    "SELECT s_first, s_second, s_third, s_count, s_end FROM trigram_sequence_stage " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "follows_count = follows_count + VALUES(follows_count), " +
+                    "tri_end_frequency = tri_end_frequency + VALUES(tri_end_frequency)",
+            (triplet, row) -> row
+                    .append(triplet.getFirstWordId()).append('\t')
+                    .append(triplet.getSecondWordId()).append('\t')
+                    .append(triplet.getThirdWordId()).append('\t')
+                    .append(triplet.getOccurrenceCount()).append('\t')
+                    .append(triplet.getEndFrequency()).append('\n'),
+            Comparator.comparingInt(WordTriplet::getFirstWordId)
+                    .thenComparingInt(WordTriplet::getSecondWordId)
+                    .thenComparingInt(WordTriplet::getThirdWordId));
+
+    // the binary context ids travel through the TSV as hex
+    private static final NgramTable<WordNgram> NGRAM_SEQUENCE = new NgramTable<>(
+            "INSERT INTO ngram_sequence (ngram_order, context_ids, next_word_id, follows_count, end_frequency) " +
+                    "VALUES (?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "follows_count = follows_count + VALUES(follows_count), " +
+                    "end_frequency = end_frequency + VALUES(end_frequency)",
+            "INSERT INTO ngram_sequence%s (ngram_order, context_ids, next_word_id, follows_count, end_frequency) " +
+                    "VALUES (?, ?, ?, ?, ?)",
+            (pstmt, ngram) -> {
+                pstmt.setInt(1, ngram.getOrder());
+                pstmt.setBytes(2, ngram.getContextKey().toBytes());
+                pstmt.setInt(3, ngram.getNextWordId());
+                pstmt.setInt(4, ngram.getOccurrenceCount());
+                pstmt.setInt(5, ngram.getEndFrequency());
+            },
+            "ngram_sequence_stage",
+            "CREATE TEMPORARY TABLE ngram_sequence_stage (" +
+                    "s_order TINYINT NOT NULL, s_context BINARY(16) NOT NULL, s_next INT NOT NULL, " +
+                    "s_count INT NOT NULL, s_end INT NOT NULL)",
+            "LOAD DATA LOCAL INFILE 'ngram_sequence.tsv' INTO TABLE ngram_sequence_stage " +
+                    "(s_order, @context, s_next, s_count, s_end) SET s_context = UNHEX(@context)",
+            "INSERT INTO ngram_sequence (ngram_order, context_ids, next_word_id, follows_count, end_frequency) " +
+                    "SELECT s_order, s_context, s_next, s_count, s_end FROM ngram_sequence_stage " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "follows_count = follows_count + VALUES(follows_count), " +
+                    "end_frequency = end_frequency + VALUES(end_frequency)",
+            (ngram, row) -> row
+                    .append(ngram.getOrder()).append('\t')
+                    .append(HexFormat.of().formatHex(ngram.getContextKey().toBytes())).append('\t')
+                    .append(ngram.getNextWordId()).append('\t')
+                    .append(ngram.getOccurrenceCount()).append('\t')
+                    .append(ngram.getEndFrequency()).append('\n'),
+            // context_ids holds the ids big-endian, so its byte order is the ids' order
+            Comparator.comparingInt(WordNgram::getOrder)
+                    .thenComparing(WordNgram::getContextWordIds, Arrays::compare)
+                    .thenComparingInt(WordNgram::getNextWordId));
+
+    // ---- chunked batch writes ----
+
+    /** Rows per transaction for the batched writers. */
+    public static final int DEFAULT_BATCH_SIZE = 10_000;
+    // attempts per chunk when MySQL picks it as a deadlock victim or times out on a row lock
+    private static final int MAX_ATTEMPTS = 5;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Rows sent per executeBatch and committed per transaction by addWordsInBatch and bulkAdd*.
+     * Keeps each rewritten statement well under max_allowed_packet however large the import is.
+     */
+    public DatabaseManager setBatchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("batch size must be at least 1");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    private interface RowBinder<T> {
+        void bind(PreparedStatement pstmt, T row) throws SQLException;
+    }
+
+    /**
+     * Runs sql once per row in chunks of batchSize, each chunk its own transaction, all on one
+     * connection and statement. A chunk that deadlocks (or times out waiting for a lock) is rolled
+     * back by the server and retried after a short randomized pause; earlier chunks stay committed.
+     */
+    private <T> void executeInChunks(String sql, Collection<T> rows, RowBinder<T> binder) throws SQLException {
+        try (Connection conn = getConnect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                List<T> chunk = new ArrayList<>(Math.min(batchSize, rows.size()));
+                for (T row : rows) {
+                    chunk.add(row);
+                    if (chunk.size() == batchSize) {
+                        commitChunk(conn, pstmt, chunk, binder);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) commitChunk(conn, pstmt, chunk, binder);
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private <T> void commitChunk(Connection conn, PreparedStatement pstmt, List<T> chunk, RowBinder<T> binder)
+            throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                for (T row : chunk) {
+                    binder.bind(pstmt, row);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                conn.commit();
+                return;
+            } catch (SQLException e) {
+                pstmt.clearBatch();
+                conn.rollback();
+                if (!isLockConflict(e) || attempt == MAX_ATTEMPTS) throw e;
+                logger.warn("Lock conflict on a chunk of {} rows (attempt {} of {}), retrying: {}",
+                        chunk.size(), attempt, MAX_ATTEMPTS, e.getMessage());
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    /** Runs sql once per row on conn, sending batchSize rows per executeBatch, without committing. */
+    private <T> void batchOn(Connection conn, String sql, Collection<T> rows, RowBinder<T> binder) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int pending = 0;
+            for (T row : rows) {
+                binder.bind(pstmt, row);
                 pstmt.addBatch();
+                if (++pending == batchSize) {
+                    pstmt.executeBatch();
+                    pending = 0;
+                }
             }
+            if (pending > 0) pstmt.executeBatch();
+        }
+    }
+
+    private interface Work<R> {
+        R run(Connection conn) throws SQLException;
+    }
 
-            logger.info("Executing batch insert/update for {} word triplets.", wordTriplets.size());
-            pstmt.executeBatch();
-            logger.info("Batch execution for word triplets complete.");
+    /** Runs work as one transaction on its own connection, retrying it whole on a lock conflict. */
+    private <R> R inTransaction(Work<R> work) throws SQLException {
+        try (Connection conn = getConnect()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (int attempt = 1; ; attempt++) {
+                    try {
+                        R result = work.run(conn);
+                        conn.commit();
+                        return result;
+                    } catch (SQLException e) {
+                        conn.rollback();
+                        if (!isLockConflict(e) || attempt == MAX_ATTEMPTS) throw e;
+                        logger.warn("Lock conflict in a transaction (attempt {} of {}), retrying: {}",
+                                attempt, MAX_ATTEMPTS, e.getMessage());
+                        backOff(attempt, e);
+                    }
+                }
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
         }
     }
 
-    public Map<Long, List<int[]>> getTrigramMap() throws SQLException {
-        logger.info("Retrieving trigram mapping.");
-        String sql = """
-                SELECT first_word_id, second_word_id, third_word_id, follows_count
-                FROM trigram_sequence
-                """;
+    // randomized, growing pause so the transactions that collided don't collide again
+    private static void backOff(int attempt, SQLException cause) throws SQLException {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(20L << attempt));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
 
-        Map<Long, List<int[]>> trigramMap = new HashMap<>();
+    /** Deadlock (1213) or lock wait timeout (1205), also when wrapped in a BatchUpdateException. */
+    private static boolean isLockConflict(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException sql
+                    && (sql.getErrorCode() == 1213 || sql.getErrorCode() == 1205 || "40001".equals(sql.getSQLState()))) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        try (Connection conn = getConnect();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
+    // ---- resumable imports ----
+    // A batch is one run's n-gram rows, written to an ImportJournal and applied chunk by chunk.
+    // Each chunk commits together with its import_progress row, so a replay skips the chunks a
+    // crashed run already applied. completeBatch() ends the batch once every chunk is in.
+
+    /** Applies one journal chunk of word pairs unless it was applied before; load selects LOAD DATA. */
+    public boolean applyWordPairs(String batchId, int part, int chunk, List<WordPair> rows, boolean load)
+            throws SQLException {
+        return applyOnce(WORD_PAIRS, batchId, part, chunk, rows, load);
+    }
+
+    /** Applies one journal chunk of word triplets unless it was applied before; load selects LOAD DATA. */
+    public boolean applyWordTriplets(String batchId, int part, int chunk, List<WordTriplet> rows, boolean load)
+            throws SQLException {
+        return applyOnce(TRIGRAM_SEQUENCE, batchId, part, chunk, rows, load);
+    }
 
+    /** Applies one journal chunk of n-grams unless it was applied before; load selects LOAD DATA. */
+    public boolean applyWordNgrams(String batchId, int part, int chunk, List<WordNgram> rows, boolean load)
+            throws SQLException {
+        return applyOnce(NGRAM_SEQUENCE, batchId, part, chunk, rows, load);
+    }
+
+    /**
+     * Sorts rows by the table's key (in place) and writes them, unless the chunk was applied before.
+     *
+     * @return false if import_progress shows the chunk was already applied (nothing is written)
+     */
+    private <T> boolean applyOnce(NgramTable<T> table, String batchId, int part, int chunk, List<T> rows, boolean load)
+            throws SQLException {
+        String mark = "INSERT IGNORE INTO import_progress (batch_id, part, chunk) VALUES (?, ?, ?)";
+        rows.sort(table.keyOrder());
+        return inTransaction(conn -> {
+            try (PreparedStatement pstmt = conn.prepareStatement(mark)) {
+                pstmt.setString(1, batchId);
+                pstmt.setInt(2, part);
+                pstmt.setInt(3, chunk);
+                if (pstmt.executeUpdate() == 0) return false;
+            }
+            if (load) loadOn(conn, table, rows);
+            else batchOn(conn, table.upsert(), rows, table.binder());
+            return true;
+        });
+    }
+
+    /** True while any file of the batch still waits for its n-grams. */
+    public boolean isBatchPending(String batchId) throws SQLException {
+        String sql = "SELECT 1 FROM import_pending WHERE batch_id = ? LIMIT 1";
+        try (Connection conn = getConnect(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, batchId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Files whose words are stored but whose n-grams are not, grouped by batch.
+     *
+     * @return batch_id -> file names
+     * @throws SQLException if a database access error occurs.
+     */
+    public Map<String, List<String>> getPendingFiles() throws SQLException {
+        String sql = "SELECT p.batch_id, f.file_name FROM import_pending p " +
+                "JOIN source_file f ON f.file_id = p.file_id ORDER BY p.batch_id, f.file_name";
+        Map<String, List<String>> pending = new LinkedHashMap<>();
+        try (Connection conn = getConnect();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
             while (rs.next()) {
-                int w1    = rs.getInt("first_word_id");
-                int w2    = rs.getInt("second_word_id");
-                int w3    = rs.getInt("third_word_id");
-                int count = rs.getInt("follows_count");
+                pending.computeIfAbsent(rs.getString(1), b -> new ArrayList<>()).add(rs.getString(2));
+            }
+        }
+        return pending;
+    }
+
+    /** Marks every file of the batch as complete and forgets its applied chunks, in one transaction. */
+    public void completeBatch(String batchId) throws SQLException {
+        inTransaction(conn -> {
+            try (PreparedStatement files = conn.prepareStatement("DELETE FROM import_pending WHERE batch_id = ?");
+                 PreparedStatement chunks = conn.prepareStatement("DELETE FROM import_progress WHERE batch_id = ?")) {
+                files.setString(1, batchId);
+                files.executeUpdate();
+                chunks.setString(1, batchId);
+                chunks.executeUpdate();
+            }
+            return null;
+        });
+        logger.info("Import batch {} complete.", batchId);
+    }
 
-                long key = (((long) w1) << 32) | (w2 & 0xffffffffL);
+    // ---- full rebuild ----
+    // A rebuild fills empty copies of the tables (name + REBUILD) that have only their primary
+    // keys, with rows that are already aggregated, so every row is a plain insert: no unique-key
+    // probes, no duplicate handling, no foreign-key lookups. finishRebuild() then adds each copy's
+    // keys and foreign keys in one ALTER and swaps all copies in with one RENAME TABLE. Until then
+    // the live tables are untouched, and a rebuild that dies leaves only copies to be dropped.
 
-                trigramMap
-                        .computeIfAbsent(key, k -> new ArrayList<>())
-                        .add(new int[]{ w3, count });
+    private static final String REBUILD = "_rebuild";
+    private static final String REPLACED = "_replaced";
+    // the tables a rebuild replaces (import_progress is emptied instead: it has no foreign keys)
+    private static final Set<String> REBUILT = Set.of("source_file", "source_fingerprint", "import_pending",
+            "words", "word_pairs", "trigram_sequence", "ngram_sequence");
+
+    /**
+     * Creates empty rebuild copies of the tables, without secondary keys or foreign keys, dropping
+     * whatever an earlier rebuild left behind.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public void beginRebuild() throws SQLException {
+        try (Connection conn = getConnect(); Statement stmt = conn.createStatement()) {
+            stmt.execute("SET FOREIGN_KEY_CHECKS = 0");
+            try {
+                for (TableDef table : SCHEMA) {
+                    if (!REBUILT.contains(table.name())) continue;
+                    stmt.execute("DROP TABLE IF EXISTS " + table.name() + REBUILD + ", " + table.name() + REPLACED);
+                    stmt.execute(new TableDef(table.name(), table.columns(), List.of()).create(REBUILD));
+                }
+                logger.info("Created rebuild tables.");
+            } finally {
+                stmt.execute("SET FOREIGN_KEY_CHECKS = 1");
+            }
+        }
+    }
+
+    /**
+     * Drops the rebuild copies of a rebuild that is given up, leaving the live tables as they are.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public void abortRebuild() throws SQLException {
+        try (Connection conn = getConnect(); Statement stmt = conn.createStatement()) {
+            stmt.execute("SET FOREIGN_KEY_CHECKS = 0");
+            try {
+                for (TableDef table : SCHEMA) {
+                    if (REBUILT.contains(table.name())) stmt.execute("DROP TABLE IF EXISTS " + table.name() + REBUILD);
+                }
+                logger.info("Dropped rebuild tables.");
+            } finally {
+                stmt.execute("SET FOREIGN_KEY_CHECKS = 1");
+            }
+        }
+    }
+
+    /**
+     * Records a file in the rebuild copies of source_file and source_fingerprint.
+     *
+     * @return The file_id of the record.
+     * @throws SQLException if a database access error occurs.
+     */
+    public int rebuildSourceFile(String fileName, long wordCount, FileFingerprint fingerprint) throws SQLException {
+        return inTransaction(conn -> recordSourceFileOn(conn, REBUILD, fileName, wordCount, fingerprint));
+    }
+
+    /** Inserts words, each with its word_id and final counts, into the rebuild copy of words. */
+    public void rebuildWords(Collection<Word> words) throws SQLException {
+        String sql = "INSERT INTO words" + REBUILD +
+                " (word_id, word_value, total_occurrences, start_sentence_count, end_sequence_count) " +
+                "VALUES (?, ?, ?, ?, ?)";
+        logger.info("Inserting {} words into the rebuild tables.", words.size());
+        executeInChunks(sql, words, WORD_WITH_ID);
+    }
+
+    /**
+     * Merges the words of the rebuild copy that the word_value collation treats as equal (e.g.
+     * "cafe" and "café", which the tokenizer keeps apart) into the one with the lowest word_id,
+     * adding up their counts, so that the unique key finishRebuild() adds can be built. The
+     * incremental import folds such words the same way, through that key.
+     *
+     * @return word_id -> word_id it was merged into, for every word removed
+     * @throws SQLException if a database access error occurs.
+     */
+    public Map<Integer, Integer> foldRebuildWords() throws SQLException {
+        String folds = "SELECT word_id, keep_id FROM (SELECT word_id, " +
+                "MIN(word_id) OVER (PARTITION BY word_value) AS keep_id FROM words" + REBUILD + ") w " +
+                "WHERE word_id <> keep_id";
+        String sums = "UPDATE words" + REBUILD + " w JOIN (SELECT MIN(word_id) AS keep_id, " +
+                "LEAST(SUM(total_occurrences), 2147483647) AS total, " +
+                "LEAST(SUM(start_sentence_count), 2147483647) AS starts, " +
+                "LEAST(SUM(end_sequence_count), 2147483647) AS ends " +
+                "FROM words" + REBUILD + " GROUP BY word_value HAVING COUNT(*) > 1) g ON w.word_id = g.keep_id " +
+                "SET w.total_occurrences = g.total, w.start_sentence_count = g.starts, w.end_sequence_count = g.ends";
+        String delete = "DELETE FROM words" + REBUILD + " WHERE word_id = ?";
+
+        Map<Integer, Integer> folded = inTransaction(conn -> {
+            Map<Integer, Integer> into = new HashMap<>();
+            try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(folds)) {
+                while (rs.next()) into.put(rs.getInt(1), rs.getInt(2));
+            }
+            if (into.isEmpty()) return into;
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(sums);
+            }
+            try (PreparedStatement pstmt = conn.prepareStatement(delete)) {
+                for (int wordId : into.keySet()) {
+                    pstmt.setInt(1, wordId);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            return into;
+        });
+        if (!folded.isEmpty()) logger.info("Folded {} collation-equal words in the rebuild tables.", folded.size());
+        return folded;
+    }
+
+    /** Inserts final word pair rows (one per pair) into the rebuild copy of word_pairs. */
+    public void rebuildWordPairs(List<WordPair> rows) throws SQLException {
+        rebuildRows(WORD_PAIRS, rows);
+    }
+
+    /** Inserts final triplet rows (one per triplet) into the rebuild copy of trigram_sequence. */
+    public void rebuildWordTriplets(List<WordTriplet> rows) throws SQLException {
+        rebuildRows(TRIGRAM_SEQUENCE, rows);
+    }
+
+    /** Inserts final n-gram rows (one per n-gram) into the rebuild copy of ngram_sequence. */
+    public void rebuildWordNgrams(List<WordNgram> rows) throws SQLException {
+        rebuildRows(NGRAM_SEQUENCE, rows);
+    }
+
+    private <T> void rebuildRows(NgramTable<T> table, List<T> rows) throws SQLException {
+        // in key order, so the unique key added later is built from (mostly) sorted data
+        rows.sort(table.keyOrder());
+        executeInChunks(table.insert().formatted(REBUILD), rows, table.binder());
+    }
+
+    /**
+     * Adds the keys and foreign keys to the rebuild copies (one ALTER per table), then replaces the
+     * live tables with them in one atomic RENAME TABLE and drops the old ones. Foreign keys are not
+     * re-checked while they are added: a rebuild writes only ids of the words it inserted.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public void finishRebuild() throws SQLException {
+        try (Connection conn = getConnect(); Statement stmt = conn.createStatement()) {
+            stmt.execute("SET FOREIGN_KEY_CHECKS = 0");
+            try {
+                List<String> swaps = new ArrayList<>();
+                List<String> replaced = new ArrayList<>();
+                for (TableDef table : SCHEMA) {
+                    if (!REBUILT.contains(table.name())) continue;
+                    if (!table.constraints().isEmpty()) {
+                        StringJoiner alter = new StringJoiner(", ", "ALTER TABLE " + table.name() + REBUILD + " ", "");
+                        for (String c : table.constraints()) alter.add("ADD " + c.formatted(REBUILD));
+                        logger.info("Adding keys to {}{}.", table.name(), REBUILD);
+                        stmt.execute(alter.toString());
+                    }
+                    swaps.add(table.name() + " TO " + table.name() + REPLACED);
+                    swaps.add(table.name() + REBUILD + " TO " + table.name());
+                    replaced.add(table.name() + REPLACED);
+                }
+                stmt.execute("RENAME TABLE " + String.join(", ", swaps));
+                logger.info("Swapped in the rebuilt tables.");
+                stmt.execute("DROP TABLE " + String.join(", ", replaced));
+                stmt.execute("TRUNCATE TABLE import_progress");
+            } finally {
+                stmt.execute("SET FOREIGN_KEY_CHECKS = 1");
+            }
+        }
+    }
+
+    // ---- LOAD DATA bulk path ----
+    // A journal chunk applied with load=true (applyWordPairs etc.) streams its rows as TSV through
+    // LOAD DATA LOCAL INFILE into a temporary staging table, then merges it into the real table
+    // with one INSERT ... SELECT. Both need allowLoadLocalInfile on the connection (pool.properties)
+    // and local_infile=ON on the server.
+
+    /**
+     * The staged load on conn, inside whatever transaction conn is in (temporary tables don't commit):
+     * creates the staging table, streams rows into it (formatted one TSV line each, without building
+     * the whole file in memory), merges it into the target and drops it.
+     */
+    private <T> void loadOn(Connection conn, NgramTable<T> table, Collection<T> rows) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("DROP TEMPORARY TABLE IF EXISTS " + table.stageTable());
+            stmt.execute(table.createStage());
+            try {
+                // the driver reads the "file" named in the statement from this stream instead
+                stmt.unwrap(JdbcStatement.class).setLocalInfileInputStream(new TsvInputStream<>(rows, table.format()));
+                logger.info("Loading {} rows into {}.", rows.size(), table.stageTable());
+                long loaded = stmt.executeLargeUpdate(table.load());
+                long merged = stmt.executeLargeUpdate(table.merge());
+                logger.info("Merged {} staged rows from {} ({} rows affected).", loaded, table.stageTable(), merged);
+            } finally {
+                stmt.execute("DROP TEMPORARY TABLE IF EXISTS " + table.stageTable());
+            }
+        }
+    }
+
+    /** Rows rendered as TSV on demand, about 64 KB at a time. */
+    private static final class TsvInputStream<T> extends InputStream {
+        private static final int CHUNK = 1 << 16;
+
+        private final Iterator<T> rows;
+        private final BiConsumer<T, StringBuilder> format;
+        private final StringBuilder text = new StringBuilder(CHUNK + 256);
+        private byte[] buffer = new byte[0];
+        private int pos;
+
+        TsvInputStream(Collection<T> rows, BiConsumer<T, StringBuilder> format) {
+            this.rows = rows.iterator();
+            this.format = format;
+        }
+
+        @Override
+        public int read() {
+            return fill() ? buffer[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!fill()) return -1;
+            int n = Math.min(len, buffer.length - pos);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        private boolean fill() {
+            if (pos < buffer.length) return true;
+            text.setLength(0);
+            while (text.length() < CHUNK && rows.hasNext()) format.accept(rows.next(), text);
+            buffer = text.toString().getBytes(StandardCharsets.US_ASCII);
+            pos = 0;
+            return buffer.length > 0;
+        }
+    }
+
+    /**
+     * Loads the followers of every context of one order from ngram_sequence, in the order of its
+     * followers key, like {@link #getBigramFollowers()}. Contexts are the two longs of NgramKey
+     * (context_ids sorts as those, unsigned; word ids never set the sign bit).
+     *
+     * @param order 4 or 5
+     * @return per context its next word ids and counts, most frequent first.
+     * @throws SQLException if a database access error occurs.
+     */
+    public FollowerTable getNgramFollowers(int order) throws SQLException {
+        logger.info("Retrieving {}-gram followers.", order);
+        String sql = """
+                SELECT context_ids, next_word_id, follows_count
+                FROM ngram_sequence
+                WHERE ngram_order = ?
+                ORDER BY context_ids, follows_count DESC, next_word_id
+                """;
+
+        FollowerTable.Builder followers = new FollowerTable.Builder();
+        try (Connection conn = getConnect();
+             PreparedStatement pstmt = streamingQuery(conn, sql)) {
+            pstmt.setInt(1, order);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    byte[] context = rs.getBytes(1);
+                    followers.add(bigEndianLong(context, 0), bigEndianLong(context, 8), rs.getInt(2), rs.getInt(3));
+                }
             }
         } catch (SQLException e) {
-            logger.error("Failed to create bigram map.", e);
+            logger.error("Failed to load {}-gram followers.", order, e);
             throw e;
         }
 
-        for (List<int[]> list : trigramMap.values()) {
-            list.sort((x, y) -> Integer.compare(y[1], x[1]));
-        }
-        logger.info("Successfully retrieved {} trigram.", trigramMap.size());
-        return trigramMap;
+        FollowerTable table = followers.build();
+        logger.info("Successfully retrieved {} {}-grams of {} contexts.", table.rows(), order, table.contexts());
+        return table;
     }
 
+    /** The 8 bytes at from as a big-endian long (NgramKey.toBytes layout). */
+    private static long bigEndianLong(byte[] bytes, int from) {
+        long v = 0;
+        for (int i = from; i < from + 8; i++) v = (v << 8) | (bytes[i] & 0xff);
+        return v;
+    }
 
     /**
      * Deletes all data from all tables in the database.
@@ -695,7 +1735,7 @@ public class DatabaseManager {
 
     public void clearAllData() throws SQLException {
         logger.warn("--- DELETING ALL DATA FROM DATABASE ---");
-        String[] tables = {"source_file", "trigram_sequence", "word_pairs", "words", "source_file"};
+        String[] tables = {"import_progress", "import_pending", "source_fingerprint", "source_file", "ngram_sequence", "trigram_sequence", "word_pairs", "words"};
 
         try (Connection conn = getConnect(); Statement stmt = conn.createStatement()) {
             try {
@@ -0,0 +1,66 @@
+/**
+ * FileFingerprint.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  What the importer remembers about a file it imported (table source_fingerprint):
+ *  its size and modification time, which are enough to tell that an unchanged
+ *  file needs no work, and the SHA-256 of its content, which decides whether a
+ *  new or changed file holds text that was already imported under any name.
+ *
+ *  The hash is taken over a memory-mapped read of the file, in windows of up to
+ *  1 GB, so even large files are hashed without copying them onto the heap.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+public record FileFingerprint(long size, long modifiedMillis, byte[] contentHash) {
+
+    /** Length of contentHash (SHA-256). */
+    public static final int HASH_BYTES = 32;
+
+    private static final long WINDOW = 1L << 30;
+
+    /** Size, modification time and content hash of file. */
+    public static FileFingerprint of(Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return new FileFingerprint(attrs.size(), attrs.lastModifiedTime().toMillis(), hash(file));
+    }
+
+    /** True if file still has the size and modification time recorded here (no content is read). */
+    public boolean matchesStat(Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return attrs.size() == size && attrs.lastModifiedTime().toMillis() == modifiedMillis;
+    }
+
+    public boolean sameContent(FileFingerprint other) {
+        return other.size == size && Arrays.equals(other.contentHash, contentHash);
+    }
+
+    /** SHA-256 of the file's bytes, read through memory-mapped windows. */
+    public static byte[] hash(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // every JDK has it
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += WINDOW) {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(WINDOW, size - pos)));
+            }
+        }
+        return digest.digest();
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * FollowerTable.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  The followers of every context of one n-gram order, in flat primitive arrays:
+ *  contexts (two longs each, as in NgramKey; a bigram context is its word id and
+ *  a trigram context pack(w1, w2), with 0 in the low half) in ascending order, and
+ *  per context a range of rows (next word id, count) with the highest count first.
+ *
+ *  DatabaseManager fills it straight from a query ordered by (context, count DESC),
+ *  so rows are appended as they arrive: no per-row objects, no per-context lists,
+ *  no sorting. Lookups are a binary search over the contexts.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.util.Arrays;
+
+public final class FollowerTable {
+
+    public static final FollowerTable EMPTY = new Builder().build();
+
+    private final long[] hi;      // [context]
+    private final long[] lo;      // [context]
+    private final int[] starts;   // [context] -> first row; starts[contexts] = rows
+    private final int[] next;     // [row]
+    private final int[] counts;   // [row]
+
+    private FollowerTable(long[] hi, long[] lo, int[] starts, int[] next, int[] counts) {
+        this.hi = hi;
+        this.lo = lo;
+        this.starts = starts;
+        this.next = next;
+        this.counts = counts;
+    }
+
+    public int contexts() {
+        return hi.length;
+    }
+
+    public boolean isEmpty() {
+        return hi.length == 0;
+    }
+
+    public int rows() {
+        return next.length;
+    }
+
+    /** Index of the context (hi, lo), or -1 if it has no followers. */
+    public int find(long hi, long lo) {
+        int c = lowerBound(hi, lo);
+        return (c < this.hi.length && this.hi[c] == hi && this.lo[c] == lo) ? c : -1;
+    }
+
+    /** Index of a context whose low half is 0 (bigram and trigram contexts), or -1. */
+    public int find(long hi) {
+        return find(hi, 0);
+    }
+
+    /** Index of the first context not below (hi, lo); contexts() if there is none. */
+    public int lowerBound(long hi, long lo) {
+        int from = 0, to = this.hi.length;
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (compare(this.hi[mid], this.lo[mid], hi, lo) < 0) from = mid + 1;
+            else to = mid;
+        }
+        return from;
+    }
+
+    public long contextHi(int c) {
+        return hi[c];
+    }
+
+    public long contextLo(int c) {
+        return lo[c];
+    }
+
+    /** First row of context c. */
+    public int first(int c) {
+        return starts[c];
+    }
+
+    /** End (exclusive) of the rows of context c. */
+    public int end(int c) {
+        return starts[c + 1];
+    }
+
+    public int next(int row) {
+        return next[row];
+    }
+
+    public int count(int row) {
+        return counts[row];
+    }
+
+    /** Sum of the counts of context c. */
+    public int total(int c) {
+        int total = 0;
+        for (int row = starts[c]; row < starts[c + 1]; row++) total += counts[row];
+        return total;
+    }
+
+    private static int compare(long hi1, long lo1, long hi2, long lo2) {
+        int cmp = Long.compare(hi1, hi2);
+        return (cmp != 0) ? cmp : Long.compare(lo1, lo2);
+    }
+
+    /**
+     * Collects rows that arrive grouped by context in ascending order, each context's rows with the
+     * highest count first (the order of DatabaseManager's follower queries).
+     */
+    public static final class Builder {
+        private long[] hi = new long[16];
+        private long[] lo = new long[16];
+        private int[] starts = new int[17];
+        private int[] next = new int[16];
+        private int[] counts = new int[16];
+        private int contexts;
+        private int rows;
+
+        public Builder add(long hi, long lo, int nextId, int count) {
+            if (contexts == 0 || this.hi[contexts - 1] != hi || this.lo[contexts - 1] != lo) {
+                if (contexts > 0 && compare(this.hi[contexts - 1], this.lo[contexts - 1], hi, lo) > 0) {
+                    throw new IllegalStateException("follower rows are not in context order");
+                }
+                if (contexts == this.hi.length) {
+                    this.hi = Arrays.copyOf(this.hi, contexts * 2);
+                    this.lo = Arrays.copyOf(this.lo, contexts * 2);
+                    starts = Arrays.copyOf(starts, contexts * 2 + 1);
+                }
+                this.hi[contexts] = hi;
+                this.lo[contexts] = lo;
+                starts[contexts++] = rows;
+            }
+            if (rows == next.length) {
+                next = Arrays.copyOf(next, rows * 2);
+                counts = Arrays.copyOf(counts, rows * 2);
+            }
+            next[rows] = nextId;
+            counts[rows++] = count;
+            return this;
+        }
+
+        public FollowerTable build() {
+            starts[contexts] = rows;
+            return new FollowerTable(Arrays.copyOf(hi, contexts), Arrays.copyOf(lo, contexts),
+                    Arrays.copyOf(starts, contexts + 1), Arrays.copyOf(next, rows), Arrays.copyOf(counts, rows));
+        }
+    }
+}
@@ -7,7 +7,7 @@
  * A unified controller that manages:
  * 1. Data Loading: Caches words, IDs, bigrams, and trigrams from the DB.
  * 2. Logic Dispatch: Acts as a Factory to instantiate the correct
- * generation strategy (Greedy vs Weighted, Bigram vs Trigram).
+ * generation strategy (Greedy vs Weighted, Bigram vs Trigram vs 4-/5-gram).
  *
  * Usage:
  * GeneratorController gc = new GeneratorController(dbManager);
@@ -25,11 +25,14 @@ public class GeneratorController {
     private Map<String, Integer> wordToId       = new HashMap<>();
     private Map<Integer, String> idToWord       = new HashMap<>();
 
-    // Bigram followers: prev_id -> list of (next_id, count)
-    private Map<Integer, List<int[]>> bigramFollowers = new HashMap<>();
+    // Bigram followers: prev_id -> (next_id, count), most frequent first
+    private FollowerTable bigramFollowers = FollowerTable.EMPTY;
 
-    // Trigram followers: (w1,w2) encoded in a long -> list of (w3_id, count)
-    private Map<Long, List<int[]>> trigramFollowers   = new HashMap<>();
+    // Trigram followers: (w1,w2) encoded in a long -> (w3_id, count)
+    private FollowerTable trigramFollowers = FollowerTable.EMPTY;
+
+    // 4-gram / 5-gram followers: order -> (w1..wN-1) packed as an NgramKey -> (wN, count)
+    private final Map<Integer, FollowerTable> ngramFollowers = new HashMap<>();
 
     // Candidate sentence starts: (word_id, start_sentence_count)
     private final List<int[]> startCandidates         = new ArrayList<>();
@@ -45,36 +48,30 @@ public class GeneratorController {
     private void load() throws SQLException {
         System.out.println("GeneratorController: Loading data...");
 
-        // 1) word -> id map (normalized to lowercase)
-        Map<String, Integer> rawWordIds = db.getWordIds();
+        // 1) one scan of the words table: word -> id (normalized to lowercase), id -> word
+        //    and the sentence-start candidates (word_id, start_sentence_count)
         wordToId.clear();
-        for (Map.Entry<String, Integer> e : rawWordIds.entrySet()) {
-            wordToId.put(e.getKey().toLowerCase(Locale.ROOT), e.getValue());
-        }
-
-        // 2) id -> word dictionary
         idToWord.clear();
-        idToWord.putAll(db.getALlWordsAsString());
-
-        // 3) bigram / trigram followers
-        bigramFollowers.clear();
-        bigramFollowers.putAll(db.getBigramMap());
-
-        trigramFollowers.clear();
-        trigramFollowers.putAll(db.getTrigramMap());
-
-        // 4) build startCandidates
         startCandidates.clear();
-        Map<Integer, Word> allWords = db.getAllWords();
-        for (Word w : allWords.values()) {
-            int start = w.getStartSentenceCount();
-            if (start > 0) {
-                startCandidates.add(new int[]{ w.getWordId(), start });
+        db.scanWords((id, value, startCount) -> {
+            wordToId.put(value.toLowerCase(Locale.ROOT), id);
+            idToWord.put(id, value);
+            if (startCount > 0) {
+                startCandidates.add(new int[]{ id, startCount });
             }
-        }
+        });
         // sort by start_sentence_count desc
         startCandidates.sort((a, b) -> Integer.compare(b[1], a[1]));
 
+        // 2) bigram / trigram followers
+        bigramFollowers = db.getBigramFollowers();
+        trigramFollowers = db.getTrigramFollowers();
+
+        ngramFollowers.clear();
+        for (int order = 4; order <= Tokenizer.MAX_ORDER; order++) {
+            ngramFollowers.put(order, db.getNgramFollowers(order));
+        }
+
         System.out.println("GeneratorController: Data loaded successfully.");
     }
 
@@ -104,6 +101,15 @@ public class GeneratorController {
                         wordToId, idToWord, trigramFollowers, startCandidates
                 );
                 break;
+            case "4gram_greedy":
+            case "4gram_weighted":
+            case "5gram_greedy":
+            case "5gram_weighted":
+                generator = new NgramGenerator(
+                        algo.charAt(0) - '0', algo.endsWith("_greedy"),
+                        wordToId, idToWord, ngramFollowers, trigramFollowers, bigramFollowers, startCandidates
+                );
+                break;
             case "tri_greedy":
             default:
                 generator = new TrigramGreedyGenerator(
@@ -8,6 +8,7 @@
  *   - Word → ID mappings
  *   - ID → Word mappings
  *   - Bigram followers (ID → [(nextId, count)])
+ *   - Trigram / 4-gram / 5-gram followers (context → [(nextId, count)])
  *   - Sentence-start candidate words
  *
  *  This class ensures the data is loaded only once and shared across
@@ -25,10 +26,12 @@ public class GeneratorDataController {
 
     private Map<String, Integer> wordToId       = new HashMap<>();
     private Map<Integer, String> idToWord       = new HashMap<>();
-    // Bigram followers: prev_id -> list of (next_id, count)
-    private  Map<Integer, List<int[]>> bigramFollowers = new HashMap<>();
-    // Trigram followers: (w1,w2) encoded in a long -> list of (w3_id, count)
-    private  Map<Long, List<int[]>> trigramFollowers   = new HashMap<>();
+    // Bigram followers: prev_id -> (next_id, count), most frequent first
+    private FollowerTable bigramFollowers = FollowerTable.EMPTY;
+    // Trigram followers: (w1,w2) encoded in a long -> (w3_id, count)
+    private FollowerTable trigramFollowers = FollowerTable.EMPTY;
+    // 4-gram / 5-gram followers: order -> (w1..wN-1) packed as an NgramKey -> (wN, count)
+    private final Map<Integer, FollowerTable> ngramFollowers = new HashMap<>();
     // Candidate sentence starts: (word_id, start_sentence_count)
     private final List<int[]> startCandidates          = new ArrayList<>();
 
@@ -39,36 +42,29 @@ public class GeneratorDataController {
     }
 
     private void load() throws SQLException {
-        // 1) word -> id map (normalized to lowercase for lookups)
-        Map<String, Integer> rawWordIds = db.getWordIds();
+        // 1) one scan of the words table: word -> id (normalized to lowercase), id -> word
+        //    and the sentence-start candidates (word_id, start_sentence_count)
         wordToId.clear();
-        for (Map.Entry<String, Integer> e : rawWordIds.entrySet()) {
-            String lower = e.getKey().toLowerCase(Locale.ROOT);
-            wordToId.put(lower, e.getValue());
-        }
-
-        // 2) id -> word dictionary
         idToWord.clear();
-        idToWord.putAll(db.getALlWordsAsString());
-
-        // 3) bigram / trigram followers
-        bigramFollowers.clear();
-        bigramFollowers.putAll(db.getBigramMap());
-
-        trigramFollowers.clear();
-        trigramFollowers.putAll(db.getTrigramMap());
-
-        // 4) build startCandidates from full Word objects
         startCandidates.clear();
-        Map<Integer, Word> allWords = db.getAllWords();
-        for (Word w : allWords.values()) {
-            int start = w.getStartSentenceCount();
-            if (start > 0) {
-                startCandidates.add(new int[]{ w.getWordId(), start });
+        db.scanWords((id, value, startCount) -> {
+            wordToId.put(value.toLowerCase(Locale.ROOT), id);
+            idToWord.put(id, value);
+            if (startCount > 0) {
+                startCandidates.add(new int[]{ id, startCount });
             }
-        }
+        });
         // sort by start_sentence_count desc
         startCandidates.sort((a, b) -> Integer.compare(b[1], a[1]));
+
+        // 2) bigram / trigram followers
+        bigramFollowers = db.getBigramFollowers();
+        trigramFollowers = db.getTrigramFollowers();
+
+        ngramFollowers.clear();
+        for (int order = 4; order <= Tokenizer.MAX_ORDER; order++) {
+            ngramFollowers.put(order, db.getNgramFollowers(order));
+        }
     }
      
     
@@ -125,16 +121,21 @@ public class GeneratorDataController {
         return idToWord;
     }
 
-    /** Bigram followers: prev_id -> list of (next_id, count). */
-    public Map<Integer, List<int[]>> getBigramFollowers() {
+    /** Bigram followers: prev_id -> (next_id, count), most frequent first. */
+    public FollowerTable getBigramFollowers() {
         return bigramFollowers;
     }
 
-    /** Trigram followers: (w1,w2) key -> list of (w3_id, count). */
-    public Map<Long, List<int[]>> getTrigramFollowers() {
+    /** Trigram followers: (w1,w2) key -> (w3_id, count), most frequent first. */
+    public FollowerTable getTrigramFollowers() {
         return trigramFollowers;
     }
 
+    /** 4-gram / 5-gram followers: order -> context key -> (next_id, count). */
+    public Map<Integer, FollowerTable> getNgramFollowers() {
+        return ngramFollowers;
+    }
+
     public List<int[]> getStartCandidates() {
         return startCandidates;
     }
@@ -12,6 +12,7 @@
  *    - "bi-weighted" → BigramWeightedGenerator
  *    - "tri-greedy"   → TrigramGreedyGenerator
  *    - "tri-weighted" → TrigramWeightedGenerator
+ *    - "4gram-greedy" / "4gram-weighted" / "5gram-greedy" / "5gram-weighted" → NgramGenerator
  *
  *  This allows the UI, CLI, and any other component to request a generator
  *  without needing to understand how each class is constructed.
@@ -54,6 +55,21 @@ public class GeneratorFactory {
                         data.getStartCandidates()
                 );
 
+            case "4gram_greedy":
+            case "4gram_weighted":
+            case "5gram_greedy":
+            case "5gram_weighted":
+                return new NgramGenerator(
+                        algo.charAt(0) - '0',
+                        algo.endsWith("_greedy"),
+                        w2i,
+                        i2w,
+                        data.getNgramFollowers(),
+                        data.getTrigramFollowers(),
+                        data.getBigramFollowers(),
+                        data.getStartCandidates()
+                );
+
             case "tri_greedy":
             default:
                 return new TrigramGreedyGenerator(
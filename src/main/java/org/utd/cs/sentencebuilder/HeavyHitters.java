@@ -0,0 +1,253 @@
+/**
+ * HeavyHitters.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Approximate counting with a memory cap: a Count-Min sketch over every key
+ *  plus a table of at most `capacity` tracked keys with the largest counts
+ *  (a min-heap, as in Space-Saving). A key that is not tracked is admitted
+ *  with its sketch estimate once that beats the smallest tracked count, which
+ *  it then replaces; tracked keys are counted exactly from then on.
+ *
+ *  Reported counts never undercount. With a sketch of width ceil(e / epsilon)
+ *  and depth ceil(ln(1 / delta)), each one overcounts by at most epsilon * N
+ *  (N = total count added) with probability 1 - delta; the sketch uses
+ *  conservative update, so in practice far less. End-of-sentence counts are
+ *  kept the same way in a second sketch plane.
+ *
+ *  Keys identify the entries (e.g. NgramCounter packed keys); the separate
+ *  64-bit hash feeds the sketch and must not depend on local ids, so that
+ *  the same n-gram hashes the same way in every Result.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+public class HeavyHitters {
+
+    private final int capacity;
+
+    // Count-Min sketch: depth rows of width counters, for counts and end counts
+    private final int width;
+    private final int depth;
+    private final int[] sketchCounts;
+    private final int[] sketchEnds;
+    private long total;
+
+    // tracked entries, by slot
+    private final long[] keys;
+    private final long[] hashes;
+    private final int[] counts;
+    private final int[] endCounts;
+    private int size;
+
+    // min-heap of slots ordered by count, and each slot's position in it
+    private final int[] heap;
+    private final int[] heapPos;
+
+    // hash index: slot + 1, or 0 for an empty bucket (length is a power of two)
+    private final int[] table;
+
+    /**
+     * @param capacity most keys tracked at once (the memory cap for the table)
+     * @param epsilon  overcount bound as a fraction of the total count
+     * @param delta    probability that a count exceeds that bound
+     */
+    public HeavyHitters(int capacity, double epsilon, double delta) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException("epsilon and delta must be in (0, 1)");
+        }
+        this.capacity = capacity;
+        this.width = (int) Math.min(Integer.MAX_VALUE / 64, (long) Math.ceil(Math.E / epsilon));
+        this.depth = Math.max(1, (int) Math.ceil(Math.log(1 / delta)));
+        this.sketchCounts = new int[width * depth];
+        this.sketchEnds = new int[width * depth];
+
+        keys = new long[capacity];
+        hashes = new long[capacity];
+        counts = new int[capacity];
+        endCounts = new int[capacity];
+        heap = new int[capacity];
+        heapPos = new int[capacity];
+        table = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+    }
+
+    /** Adds count/endCount occurrences of key, whose id-independent hash is hash. */
+    public void add(long key, long hash, int count, int endCount) {
+        total += count;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        conservativeAdd(sketchCounts, h1, h2, count);
+        conservativeAdd(sketchEnds, h1, h2, endCount);
+
+        int slot = indexOf(key);
+        if (slot >= 0) {
+            counts[slot] += count;
+            endCounts[slot] += endCount;
+            siftDown(heapPos[slot]);
+            return;
+        }
+
+        int estimate = estimate(sketchCounts, h1, h2);
+        boolean evict;
+        if (size < capacity) {
+            slot = size++;
+            place(slot, slot);
+            evict = false;
+        } else if (estimate > counts[heap[0]]) {
+            slot = heap[0]; // replaces the smallest tracked count
+            remove(keys[slot]);
+            evict = true;
+        } else {
+            return;
+        }
+        keys[slot] = key;
+        hashes[slot] = hash;
+        counts[slot] = estimate;
+        endCounts[slot] = estimate(sketchEnds, h1, h2);
+        insert(key, slot);
+        if (evict) siftDown(0);
+        else siftUp(heapPos[slot]);
+    }
+
+    /** @return the slot of key, or -1 if it is not tracked */
+    public int indexOf(long key) {
+        int mask = table.length - 1;
+        for (int b = NgramCounter.hash(key) & mask; table[b] != 0; b = (b + 1) & mask) {
+            if (keys[table[b] - 1] == key) return table[b] - 1;
+        }
+        return -1;
+    }
+
+    /** Number of tracked keys; slots are 0 .. size() - 1. */
+    public int size() {
+        return size;
+    }
+
+    public long key(int slot) {
+        return keys[slot];
+    }
+
+    public long hash(int slot) {
+        return hashes[slot];
+    }
+
+    public int count(int slot) {
+        return counts[slot];
+    }
+
+    public int endCount(int slot) {
+        return endCounts[slot];
+    }
+
+    /** Sum of all counts added, tracked or not. */
+    public long totalCount() {
+        return total;
+    }
+
+    /** Bytes held by the sketch and the table (excluding object headers). */
+    public long memoryBytes() {
+        return 8L * width * depth + 32L * capacity + 4L * table.length;
+    }
+
+    /** Copies the tracked keys and their counts into an NgramCounter. */
+    public NgramCounter toCounter() {
+        NgramCounter out = new NgramCounter(size);
+        for (int slot = 0; slot < size; slot++) {
+            out.add(keys[slot], counts[slot], endCounts[slot]);
+        }
+        return out;
+    }
+
+    /** 64-bit hash of an n-gram's words, the same in every dictionary. */
+    public static long hashWords(String... words) {
+        long h = 0;
+        for (String w : words) {
+            h = (h ^ w.hashCode()) * 0x9E3779B97F4A7C15L;
+        }
+        // murmur3 fmix64
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Conservative update: raises each of the key's counters only as far as its new estimate,
+     * which keeps every estimate an upper bound but overcounts much less than adding everywhere.
+     */
+    private void conservativeAdd(int[] plane, int h1, int h2, int count) {
+        if (count == 0) return;
+        int target = estimate(plane, h1, h2) + count;
+        for (int row = 0; row < depth; row++) {
+            int cell = row * width + Math.floorMod(h1 + row * h2, width);
+            if (plane[cell] < target) plane[cell] = target;
+        }
+    }
+
+    private int estimate(int[] plane, int h1, int h2) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, plane[row * width + Math.floorMod(h1 + row * h2, width)]);
+        }
+        return min;
+    }
+
+    // ---- index table ----
+
+    private void insert(long key, int slot) {
+        int mask = table.length - 1;
+        int b = NgramCounter.hash(key) & mask;
+        while (table[b] != 0) b = (b + 1) & mask;
+        table[b] = slot + 1;
+    }
+
+    /** Linear-probing delete: shifts later entries of the cluster back into the hole. */
+    private void remove(long key) {
+        int mask = table.length - 1;
+        int b = NgramCounter.hash(key) & mask;
+        while (keys[table[b] - 1] != key) b = (b + 1) & mask;
+
+        for (int next = (b + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = NgramCounter.hash(keys[table[next] - 1]) & mask;
+            // move the entry back unless its home lies cyclically in (b, next]
+            if (((next - home) & mask) >= ((next - b) & mask)) {
+                table[b] = table[next];
+                b = next;
+            }
+        }
+        table[b] = 0;
+    }
+
+    // ---- min-heap on counts ----
+
+    private void siftUp(int pos) {
+        int slot = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (counts[heap[parent]] <= counts[slot]) break;
+            place(pos, heap[parent]);
+            pos = parent;
+        }
+        place(pos, slot);
+    }
+
+    private void siftDown(int pos) {
+        int slot = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) break;
+            if (child + 1 < size && counts[heap[child + 1]] < counts[heap[child]]) child++;
+            if (counts[heap[child]] >= counts[slot]) break;
+            place(pos, heap[child]);
+            pos = child;
+        }
+        place(pos, slot);
+    }
+
+    private void place(int pos, int slot) {
+        heap[pos] = slot;
+        heapPos[slot] = pos;
+    }
+}
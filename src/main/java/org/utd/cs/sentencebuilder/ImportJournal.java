@@ -0,0 +1,328 @@
+/**
+ * ImportJournal.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Local file holding the n-gram rows of one import batch, so they can be applied
+ *  to the database after a crash without reading the source files again.
+ *
+ *  A journal is written whole under a temporary name, forced to disk and renamed
+ *  into place, so a journal file that exists is always complete. Replaying it hands
+ *  the rows back in fixed chunks numbered (part, chunk); DatabaseManager.apply*
+ *  records each chunk in import_progress in the same transaction that writes it,
+ *  which is what makes a replay apply every chunk exactly once.
+ *
+ *  Rows can be added one at a time (startPart / add / endPart), so a part never has
+ *  to be in memory as a whole; only the chunks being filled are buffered.
+ *
+ *  Rows are split into partitions by their first word id, and every chunk holds rows
+ *  of one partition. N-gram tables' unique keys start with that id, so chunks of
+ *  different partitions cover disjoint key ranges and can be written on separate
+ *  connections without waiting on each other's row locks (see PartitionedWriters).
+ *
+ *  Format (DataOutputStream): magic, version, batch id, rows per chunk, partitions,
+ *  then parts, each its n-gram order (2 = word pairs, 3 = triplets, 4+ = ngram_sequence)
+ *  followed by chunks (row count, partition, then per row its word ids, count and
+ *  end count) and a 0 row count; a 0 order ends the file.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public final class ImportJournal {
+
+    /** Where ImporterCli keeps journals of batches that are not complete yet. */
+    public static final Path DEFAULT_DIR = Path.of("data", "journal");
+
+    private static final int MAGIC = 0x53424a4c; // "SBJL"
+    private static final int VERSION = 3;
+    private static final String SUFFIX = ".journal";
+
+    private ImportJournal() {}
+
+    /** Receives a journal's rows, one chunk at a time, with the partition the chunk belongs to. */
+    public interface Chunks {
+        void wordPairs(int part, int chunk, int partition, List<WordPair> rows) throws SQLException;
+
+        void wordTriplets(int part, int chunk, int partition, List<WordTriplet> rows) throws SQLException;
+
+        void wordNgrams(int part, int chunk, int partition, List<WordNgram> rows) throws SQLException;
+    }
+
+    /** Partition (0 .. partitions - 1) of a row whose first word id is firstWordId. */
+    public static int partitionOf(int firstWordId, int partitions) {
+        return (int) ((Integer.toUnsignedLong(firstWordId * 0x9E3779B9) * partitions) >>> 32);
+    }
+
+    /** The journal file of batchId in dir. */
+    public static Path fileOf(Path dir, String batchId) {
+        return dir.resolve(batchId + SUFFIX);
+    }
+
+    /** Complete journals in dir (partly written ones never carry the suffix), oldest name first. */
+    public static List<Path> list(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (var st = Files.list(dir)) {
+            return st.filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                     .sorted()
+                     .collect(Collectors.toList());
+        }
+    }
+
+    /** Batch id of a journal file, from its name. */
+    public static String batchIdOf(Path journal) {
+        String name = journal.getFileName().toString();
+        return name.substring(0, name.length() - SUFFIX.length());
+    }
+
+    /**
+     * Starts the journal of batchId in dir, with rows split into the given number of partitions;
+     * nothing is visible under the journal's name until commit().
+     */
+    public static Writer create(Path dir, String batchId, int chunkRows, int partitions) throws IOException {
+        if (chunkRows < 1) throw new IllegalArgumentException("rows per chunk must be at least 1");
+        if (partitions < 1) throw new IllegalArgumentException("partitions must be at least 1");
+        Files.createDirectories(dir);
+        return new Writer(dir, batchId, chunkRows, partitions);
+    }
+
+    public static final class Writer implements AutoCloseable {
+        private final Path target;
+        private final Path temp;
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private final int chunkRows;
+        private final int partitions;
+        private boolean committed;
+
+        // the chunk being filled per partition: per row its order word ids, count and end count
+        private int order;
+        private final int[][] chunks;
+        private final int[] rows;
+
+        private Writer(Path dir, String batchId, int chunkRows, int partitions) throws IOException {
+            this.chunkRows = chunkRows;
+            this.partitions = partitions;
+            chunks = new int[partitions][];
+            rows = new int[partitions];
+            target = fileOf(dir, batchId);
+            temp = dir.resolve(batchId + SUFFIX + ".tmp");
+            file = new FileOutputStream(temp.toFile());
+            out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(batchId);
+            out.writeInt(chunkRows);
+            out.writeInt(partitions);
+        }
+
+        /** Starts a part of n-grams of one order (2 = word pairs, 3 = triplets, 4+ = ngram_sequence). */
+        public Writer startPart(int order) throws IOException {
+            if (this.order != 0) throw new IllegalStateException("part of order " + this.order + " not ended");
+            if (order < 2 || order > Tokenizer.MAX_ORDER) throw new IllegalArgumentException("bad n-gram order " + order);
+            this.order = order;
+            Arrays.fill(chunks, null);
+            out.writeByte(order);
+            return this;
+        }
+
+        /** Adds a row to the current part: its order word ids in sequence, count and end count. */
+        public void add(int[] wordIds, int count, int endCount) throws IOException {
+            int p = partitionOf(wordIds[0], partitions);
+            if (chunks[p] == null) chunks[p] = new int[Math.min(chunkRows, 1 << 12) * (order + 2)];
+            int stride = order + 2;
+            int at = rows[p] * stride;
+            if (at + stride > chunks[p].length) {
+                chunks[p] = Arrays.copyOf(chunks[p], Math.min(chunks[p].length * 2, chunkRows * stride));
+            }
+            System.arraycopy(wordIds, 0, chunks[p], at, order);
+            chunks[p][at + order] = count;
+            chunks[p][at + order + 1] = endCount;
+            if (++rows[p] == chunkRows) flushChunk(p);
+        }
+
+        public Writer endPart() throws IOException {
+            for (int p = 0; p < partitions; p++) {
+                if (rows[p] > 0) flushChunk(p);
+            }
+            out.writeInt(0);
+            order = 0;
+            return this;
+        }
+
+        private void flushChunk(int p) throws IOException {
+            out.writeInt(rows[p]);
+            out.writeInt(p);
+            for (int i = 0, n = rows[p] * (order + 2); i < n; i++) out.writeInt(chunks[p][i]);
+            rows[p] = 0;
+        }
+
+        public Writer addWordPairs(List<WordPair> rows) throws IOException {
+            startPart(2);
+            int[] ids = new int[2];
+            for (WordPair wp : rows) {
+                ids[0] = wp.getPrecedingWordId();
+                ids[1] = wp.getFollowingWordId();
+                add(ids, wp.getOccurrenceCount(), wp.getEndFrequency());
+            }
+            return endPart();
+        }
+
+        public Writer addWordTriplets(List<WordTriplet> rows) throws IOException {
+            startPart(3);
+            int[] ids = new int[3];
+            for (WordTriplet wt : rows) {
+                ids[0] = wt.getFirstWordId();
+                ids[1] = wt.getSecondWordId();
+                ids[2] = wt.getThirdWordId();
+                add(ids, wt.getOccurrenceCount(), wt.getEndFrequency());
+            }
+            return endPart();
+        }
+
+        /** @param order n-gram order of every row (4 .. Tokenizer.MAX_ORDER) */
+        public Writer addWordNgrams(int order, List<WordNgram> rows) throws IOException {
+            startPart(order);
+            int[] ids = new int[order];
+            for (WordNgram wn : rows) {
+                System.arraycopy(wn.getContextWordIds(), 0, ids, 0, order - 1);
+                ids[order - 1] = wn.getNextWordId();
+                add(ids, wn.getOccurrenceCount(), wn.getEndFrequency());
+            }
+            return endPart();
+        }
+
+        /** Ends the journal, forces it to disk and moves it under its real name in one step. */
+        public Path commit() throws IOException {
+            if (order != 0) throw new IllegalStateException("part of order " + order + " not ended");
+            out.writeByte(0);
+            out.flush();
+            file.getFD().sync();
+            out.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return target;
+        }
+
+        /** Discards the journal unless it was committed. */
+        @Override
+        public void close() throws IOException {
+            if (committed) return;
+            out.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads journal and passes its rows to chunks in order, holding one chunk in memory at a time.
+     *
+     * @throws IOException if the file is not a journal or cannot be read
+     */
+    public static void replay(Path journal, Chunks chunks) throws IOException, SQLException {
+        try (DataInputStream in = open(journal)) {
+            for (int part = 0, order = in.readByte(); order != 0; part++, order = in.readByte()) {
+                for (int chunk = 0, n = in.readInt(); n != 0; chunk++, n = in.readInt()) {
+                    int partition = in.readInt();
+                    switch (order) {
+                        case 2 -> chunks.wordPairs(part, chunk, partition, readWordPairs(in, n));
+                        case 3 -> chunks.wordTriplets(part, chunk, partition, readWordTriplets(in, n));
+                        default -> chunks.wordNgrams(part, chunk, partition, readWordNgrams(in, order, n));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Rows of each n-gram order in journal (index = order), read from the chunk headers without
+     * reading the rows, e.g. to choose how a whole table is written before replaying it.
+     *
+     * @throws IOException if the file is not a journal or cannot be read
+     */
+    public static long[] rowsByOrder(Path journal) throws IOException {
+        long[] rows = new long[Tokenizer.MAX_ORDER + 1];
+        try (DataInputStream in = open(journal)) {
+            for (int order = in.readByte(); order != 0; order = in.readByte()) {
+                for (int n = in.readInt(); n != 0; n = in.readInt()) {
+                    in.readInt(); // partition
+                    in.skipNBytes((long) n * (order + 2) * Integer.BYTES);
+                    rows[order] += n;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** Opens journal positioned after its header. */
+    private static DataInputStream open(Path journal) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(journal), 1 << 16));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(journal + " is not an import journal");
+            }
+            in.readUTF();
+            in.readInt(); // rows per chunk; each chunk carries its own count
+            in.readInt(); // partitions; each chunk carries its own
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    private static List<WordPair> readWordPairs(DataInputStream in, int n) throws IOException {
+        List<WordPair> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            WordPair wp = new WordPair();
+            wp.setPrecedingWordId(in.readInt());
+            wp.setFollowingWordId(in.readInt());
+            wp.setOccurrenceCount(in.readInt());
+            wp.setEndFrequency(in.readInt());
+            out.add(wp);
+        }
+        return out;
+    }
+
+    private static List<WordTriplet> readWordTriplets(DataInputStream in, int n) throws IOException {
+        List<WordTriplet> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            WordTriplet wt = new WordTriplet();
+            wt.setFirstWordId(in.readInt());
+            wt.setSecondWordId(in.readInt());
+            wt.setThirdWordId(in.readInt());
+            wt.setOccurrenceCount(in.readInt());
+            wt.setEndFrequency(in.readInt());
+            out.add(wt);
+        }
+        return out;
+    }
+
+    private static List<WordNgram> readWordNgrams(DataInputStream in, int order, int n) throws IOException {
+        List<WordNgram> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int[] context = new int[order - 1];
+            for (int k = 0; k < context.length; k++) context[k] = in.readInt();
+            WordNgram wn = new WordNgram();
+            wn.setContextWordIds(context);
+            wn.setNextWordId(in.readInt());
+            wn.setOccurrenceCount(in.readInt());
+            wn.setEndFrequency(in.readInt());
+            out.add(wn);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * ImportPipeline.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Runs the per-file part of an import as two stages connected by bounded
+ *  queues, so tokenizing and database writes overlap instead of taking turns:
+ *
+ *    files -> [queue] -> tokenize (CPU pool) -> [queue] -> write (writer pool)
+ *                              ^                                  |
+ *                              +-------- merge (committed) -------+
+ *
+ *  A file whose write succeeded goes back to the tokenizer threads, which merge
+ *  its counts into the run's totals before they take the next file (and, once
+ *  the files run out, until the writers are done). So only committed files are
+ *  counted, and the merges run on the CPU pool, not behind the writes.
+ *  Only paths go into the first queue: the tokenize stage reads each file from
+ *  disk in chunks (Tokenizer.processFile), so no file is ever held whole and
+ *  files over 2 GB work. What is held are the per-file counts, and a full queue
+ *  blocks the stage that feeds it, so there are never more than
+ *  queueCapacity + tokenizers + writers of them, plus the committed files
+ *  waiting for a merge, which the tokenizers take before any new file.
+ *  A file that fails in any stage is reported and skipped; the others go on, and
+ *  run() returns the files that failed.
+ *  An Error in a stage (e.g. OutOfMemoryError on a huge book) stops the run: the
+ *  stages drain what is queued without working on it, so no thread is left waiting
+ *  on a queue, and run() rethrows the Error once every thread has finished.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ImportPipeline {
+
+    /** Tokenize stage: reads one file and turns it into its counts. */
+    public interface Tokenize {
+        Tokenizer.Result apply(Path file) throws Exception;
+    }
+
+    /** Write stage: stores one file's counts; throws if they were not stored. */
+    public interface Write {
+        void accept(Path file, Tokenizer.Result result) throws Exception;
+    }
+
+    /** Merge step: adds one stored file's counts to the run's totals; called from many threads. */
+    public interface Merge {
+        void accept(Path file, Tokenizer.Result result) throws Exception;
+    }
+
+    // a file moving through the stages; a null path marks the end of the stream
+    private record Item(Path file, Tokenizer.Result result) {}
+    private static final Item END = new Item(null, null);
+
+    private int tokenizers = Runtime.getRuntime().availableProcessors();
+    private int writers = 1;
+    private int queueCapacity = 4;
+
+    public int getTokenizers() {
+        return tokenizers;
+    }
+
+    /** Tokenizer threads; defaults to the number of cores. */
+    public ImportPipeline setTokenizers(int tokenizers) {
+        this.tokenizers = positive(tokenizers, "tokenizers");
+        return this;
+    }
+
+    public int getWriters() {
+        return writers;
+    }
+
+    /**
+     * Writer threads, each holding a database connection while it writes. More than one
+     * lets files' writes overlap, at the cost of lock waits on the words they share.
+     */
+    public ImportPipeline setWriters(int writers) {
+        this.writers = positive(writers, "writers");
+        return this;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /** Files each queue holds before the stage in front of it has to wait. */
+    public ImportPipeline setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = positive(queueCapacity, "queue capacity");
+        return this;
+    }
+
+    /**
+     * Tokenizes, writes and merges every file, and returns once all of them are through
+     * (or have failed). Files finish in no particular order.
+     *
+     * @return the files that failed in some stage (reported on stderr), in no particular order;
+     *         a file whose write failed is not merged
+     * @throws Error the first Error thrown by a stage, after all stages have stopped
+     */
+    public List<Path> run(List<Path> files, Tokenize tokenize, Write write, Merge merge) throws InterruptedException {
+        BlockingQueue<Item> pending = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Item> tokenized = new ArrayBlockingQueue<>(queueCapacity);
+        // unbounded, so a writer never waits for a tokenizer that waits for it
+        BlockingQueue<Item> committed = new LinkedBlockingQueue<>();
+        AtomicReference<Error> crash = new AtomicReference<>();
+        List<Path> failed = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger tokenizing = new AtomicInteger(tokenizers);
+
+        List<Thread> tokenizerThreads = new ArrayList<>();
+        for (int i = 0; i < tokenizers; i++) {
+            tokenizerThreads.add(start("import-tokenizer-" + i, () -> {
+                try {
+                    while (true) {
+                        for (Item done = committed.poll(); done != null; done = committed.poll()) {
+                            merge(merge, done, failed, crash);
+                        }
+                        Item item = pending.take();
+                        if (item == END) break;
+                        if (crash.get() != null) continue; // drain only, so the feeder never blocks
+                        try {
+                            Tokenizer.Result r = tokenize.apply(item.file());
+                            tokenized.put(new Item(item.file(), r));
+                        } catch (InterruptedException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            fail(failed, "tokenize", item.file(), e);
+                        } catch (Error e) {
+                            crash(crash, "tokenize", item.file(), e);
+                        }
+                    }
+                } finally {
+                    // the last tokenizer out ends the write stream
+                    if (tokenizing.decrementAndGet() == 0) {
+                        for (int w = 0; w < writers; w++) tokenized.put(END);
+                    }
+                }
+                // no files left: merge what the writers commit until run() ends this stream
+                for (Item done = committed.take(); done != END; done = committed.take()) {
+                    merge(merge, done, failed, crash);
+                }
+            }));
+        }
+
+        List<Thread> writerThreads = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            writerThreads.add(start("import-writer-" + i, () -> {
+                for (Item item = tokenized.take(); item != END; item = tokenized.take()) {
+                    if (crash.get() != null) continue; // drain only, so the tokenizers never block
+                    try {
+                        write.accept(item.file(), item.result());
+                        committed.add(item);
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        fail(failed, "write", item.file(), e);
+                    } catch (Error e) {
+                        crash(crash, "write", item.file(), e);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Path file : files) {
+                if (crash.get() != null) break;
+                pending.put(new Item(file, null));
+            }
+        } finally {
+            // always end every stream, so every stage thread finishes; the tokenizers end the
+            // writers' stream, and keep merging until the writers are done
+            for (int i = 0; i < tokenizers; i++) pending.put(END);
+            for (Thread t : writerThreads) t.join();
+            for (int i = 0; i < tokenizers; i++) committed.put(END);
+            for (Thread t : tokenizerThreads) t.join();
+        }
+
+        Error e = crash.get();
+        if (e != null) throw e;
+        return failed;
+    }
+
+    private interface Stage {
+        void run() throws InterruptedException;
+    }
+
+    private static Thread start(String name, Stage stage) {
+        Thread t = new Thread(() -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name);
+        t.start();
+        return t;
+    }
+
+    private static void merge(Merge merge, Item item, List<Path> failed, AtomicReference<Error> crash) {
+        if (crash.get() != null) return;
+        try {
+            merge.accept(item.file(), item.result());
+        } catch (Exception e) {
+            fail(failed, "merge", item.file(), e);
+        } catch (Error e) {
+            crash(crash, "merge", item.file(), e);
+        }
+    }
+
+    private static void crash(AtomicReference<Error> crash, String stage, Path file, Error e) {
+        System.err.println(stage + " stopped the import at " + file.getFileName() + ": " + e);
+        crash.compareAndSet(null, e);
+    }
+
+    private static void fail(List<Path> failed, String stage, Path file, Exception e) {
+        failed.add(file);
+        System.err.println(stage + " failed for " + file.getFileName() + ": " + e.getMessage());
+        e.printStackTrace();
+    }
+
+    private static int positive(int n, String what) {
+        if (n < 1) throw new IllegalArgumentException(what + " must be at least 1");
+        return n;
+    }
+}
@@ -19,6 +19,9 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -31,16 +34,109 @@ import java.util.stream.Collectors;
  *   mvn -q -DskipTests exec:java -Dexec.mainClass=org.utd.cs.sentencebuilder.ImporterCli
  *   mvn -q -DskipTests exec:java -Dexec.mainClass=org.utd.cs.sentencebuilder.ImporterCli -Dexec.args="--words-only"
  *   mvn -q -DskipTests exec:java -Dexec.mainClass=org.utd.cs.sentencebuilder.ImporterCli -Dexec.args="path/to/folder"
+ *   mvn -q -DskipTests exec:java -Dexec.mainClass=org.utd.cs.sentencebuilder.ImporterCli -Dexec.args="--approx-trigrams=5000000"
+ *   mvn -q -DskipTests exec:java -Dexec.mainClass=org.utd.cs.sentencebuilder.ImporterCli -Dexec.args="--order=5"
+ *
+ * --approx-trigrams=N keeps only the ~N most frequent trigrams across all files (Count-Min sketch +
+ * heavy-hitter table, see HeavyHitters) instead of all of them; --trigram-error=EPS sets the
+ * sketch's overcount bound as a fraction of all trigrams (default 1e-5).
+ * --order=4 or --order=5 also stores 4-grams (and 5-grams) in ngram_sequence; it needs exact trigrams.
+ * Files go through a tokenize / write pipeline (see ImportPipeline); --tokenizers=N and --writers=N
+ * set each stage's parallelism and --queue=N the queue size between them. Files are read from disk in
+ * chunks while they are tokenized; one of at least PARALLEL_FILE_BYTES is tokenized on all cores.
+ * N-gram tables that get at least --bulk-load-rows=N new rows (default 100000) from a batch are
+ * written with LOAD DATA LOCAL INFILE through a staging table, every chunk of that table; if the
+ * server refuses, that chunk and the rest of the run use batched inserts.
+ * Batched inserts commit every --batch-size=N rows (default 10000) and retry a chunk on deadlock.
+ * Journal chunks are split by first word id and applied by --db-writers=N connections in parallel
+ * (default: the pool's maximumPoolSize - 2), each chunk sorted by key before it is written.
+ * --rebuild replaces all imported data with the files under the folder: new tables are loaded without
+ * keys, get their keys afterwards and are swapped in at the end (see rebuild()).
+ * --spill-mb=N caps the memory of the cross-file n-gram counts: above it they are written to sorted
+ * temporary runs and merged from disk at the end (see SpillingAggregate); it needs exact trigrams.
+ *
+ * Each file's words are stored with its source_file row in one transaction. The run's n-gram rows
+ * are then written to a journal in data/journal (see ImportJournal) and applied chunk by chunk;
+ * if the importer dies part way, the next run finishes the journal (or re-reads the files whose
+ * n-grams never made it into one) before importing anything new. This assumes one importer
+ * writes to the database at a time.
  */
 public class ImporterCli {
 
+    /** Row count from which n-gram tables are written with LOAD DATA instead of batched inserts. */
+    public static final int DEFAULT_BULK_LOAD_ROWS = 100_000;
+
+    // file size from which one file is tokenized on the common ForkJoinPool rather than on one thread
+    private static final long PARALLEL_FILE_BYTES = 64L << 20;
+
+    // rows per journal chunk, i.e. per transaction when the journal is applied
+    private static final int JOURNAL_CHUNK_ROWS = 100_000;
+
     private final DatabaseManager db;
+    private int bulkLoadRows = DEFAULT_BULK_LOAD_ROWS;
+    private Path journalDir = ImportJournal.DEFAULT_DIR;
+    private long spillBytes;
+    private int dbWriters;
+    private WordIdCache wordCache;
+    // set once LOAD DATA has failed, so later chunks go straight to batched inserts
+    private final AtomicBoolean loadFailed = new AtomicBoolean();
 
     public ImporterCli(DatabaseManager db) {
         this.db = db;
     }
 
+    /**
+     * Tables that get at least this many new rows from a batch go through LOAD DATA;
+     * Integer.MAX_VALUE turns it off.
+     */
+    public ImporterCli setBulkLoadRows(int bulkLoadRows) {
+        this.bulkLoadRows = bulkLoadRows;
+        return this;
+    }
+
+    /**
+     * Memory the cross-file n-gram counts may use before they are spilled to sorted runs on disk;
+     * 0 (the default) keeps them all in memory. Ignored with approximate trigrams, which are bounded.
+     */
+    public ImporterCli setSpillBudget(long spillBytes) {
+        this.spillBytes = spillBytes;
+        return this;
+    }
+
+    /**
+     * Connections that write n-gram rows in parallel, each owning a disjoint share of the keys.
+     * Defaults to the pool's maximumPoolSize less two (left for other work), at least one.
+     */
+    public ImporterCli setDbWriters(int dbWriters) {
+        if (dbWriters < 1) throw new IllegalArgumentException("db writers must be at least 1");
+        this.dbWriters = dbWriters;
+        return this;
+    }
+
+    private int dbWriters() {
+        return dbWriters > 0 ? dbWriters : Math.max(1, db.getMaxPoolSize() - 2);
+    }
+
+    /** Folder for the journals of unfinished imports (default data/journal). */
+    public ImporterCli setJournalDir(Path journalDir) {
+        this.journalDir = journalDir;
+        return this;
+    }
+
     public void run(Path root, boolean wordsOnly) {
+        run(root, wordsOnly, new Tokenizer.Options());
+    }
+
+    /** @param aggregate settings for the cross-file totals (e.g. approximate trigrams, n-gram order) */
+    public void run(Path root, boolean wordsOnly, Tokenizer.Options aggregate) {
+        run(root, wordsOnly, aggregate, new ImportPipeline());
+    }
+
+    /**
+     * @param aggregate settings for the cross-file totals (e.g. approximate trigrams, n-gram order)
+     * @param pipeline  parallelism of the per-file tokenize / write stages
+     */
+    public void run(Path root, boolean wordsOnly, Tokenizer.Options aggregate, ImportPipeline pipeline) {
         System.out.println("Scanning: " + root.toAbsolutePath());
         System.out.println("Mode: " + (wordsOnly ? "WORDS ONLY" : "WORDS + BIGRAMS"));
 
@@ -50,115 +146,784 @@ public class ImporterCli {
                 System.out.println("No .txt files found. Put cleaned sources in data/clean or pass a folder/file.");
                 return;
             }
+            resumeUnfinishedImports(files, aggregate);
 
-            // Get already-imported files
-            Map<String, SourceFile> importedFilesMap;
+            // Get already-imported files with their fingerprints, in one query
+            Map<String, FileFingerprint> fingerprints;
+            Map<String, String> byContent = new HashMap<>();
             try {
-                importedFilesMap = db.getAllSourceFiles();
-                System.out.println("Found " + importedFilesMap.size() + " files already in database.");
+                fingerprints = db.getFingerprints();
+                System.out.println("Found " + fingerprints.size() + " files already in database.");
             } catch (SQLException e) {
                 System.err.println("CRITICAL: Could not retrieve existing file list from database. Aborting.");
                 e.printStackTrace();
                 return;
             }
+            fingerprints.forEach((name, fp) -> {
+                if (fp != null) byContent.putIfAbsent(contentKey(fp), name);
+            });
 
-            Map<String, Word> globalWords = new HashMap<>();
-            Map<String, Integer> globalBigrams = new HashMap<>();
-            Map<String, Integer> globalTrigrams = new HashMap<>();
-            Map<String, Integer> globalBiEndCounts = new HashMap<>();
-            Map<String, Integer> globalTriEndCounts = new HashMap<>();
+            Map<Path, FileFingerprint> pending = selectFilesToImport(files, new ImportedFiles() {
+                @Override
+                public boolean isRecorded(String fileName) {
+                    return fingerprints.containsKey(fileName);
+                }
 
-            // ---- PER-FILE PASS ----
-            for (Path p : files) {
-                System.out.println("\n--- Processing: " + p.getFileName() + " ---");
+                @Override
+                public FileFingerprint fingerprint(String fileName) {
+                    return fingerprints.get(fileName);
+                }
 
-                if (importedFilesMap.containsKey(p.getFileName().toString())) {
-                    System.out.println("File already imported.");
-                    continue; // Skip this file
+                @Override
+                public String fileWithContent(FileFingerprint fingerprint) {
+                    return byContent.get(contentKey(fingerprint));
                 }
+            });
+            importPending(pending, wordsOnly, aggregate, pipeline);
 
-                String text = Files.readString(p);
-                Tokenizer.Result r = Tokenizer.process(text);
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Import interrupted.");
+        }
+    }
 
-                System.out.println("Tokens: " + r.tokens.size() + " | Unique words: " + r.words.size());
+    /**
+     * Imports exactly these files (e.g. one uploaded book), skipping any whose content was already
+     * imported. Each check is an indexed lookup and nothing else is listed, so the cost depends on
+     * these files, not on the library.
+     */
+    public void importFiles(List<Path> files) {
+        importFiles(files, false, new Tokenizer.Options(), new ImportPipeline());
+    }
 
-                // record source file row (non-fatal if it fails)
-                try {
-                    db.addSourceFile(p.getFileName().toString(), r.tokens.size());
-                } catch (SQLException ex) {
-                    System.err.println("addSourceFile failed for " + p.getFileName() + ": " + ex.getMessage());
-                }
+    /**
+     * @param aggregate settings for the cross-file totals (e.g. approximate trigrams, n-gram order)
+     * @param pipeline  parallelism of the per-file tokenize / write stages
+     */
+    public void importFiles(List<Path> files, boolean wordsOnly, Tokenizer.Options aggregate, ImportPipeline pipeline) {
+        resumeUnfinishedImports(files, aggregate);
+        Map<Path, FileFingerprint> pending = selectFilesToImport(files, new ImportedFiles() {
+            @Override
+            public boolean isRecorded(String fileName) throws SQLException {
+                return db.isFileImported(fileName);
+            }
 
-                // upsert words for THIS file
-                try {
-                    db.addWordsInBatch(r.words.values());
-                } catch (SQLException ex) {
-                    System.err.println("addWordsInBatch failed for " + p.getFileName() + ": " + ex.getMessage());
-                    ex.printStackTrace();
-                    continue; // move to next file
+            @Override
+            public FileFingerprint fingerprint(String fileName) throws SQLException {
+                return db.getFingerprint(fileName);
+            }
+
+            @Override
+            public String fileWithContent(FileFingerprint fingerprint) throws SQLException {
+                return db.findFileByContent(fingerprint);
+            }
+        });
+
+        try {
+            importPending(pending, wordsOnly, aggregate, pipeline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Import interrupted.");
+        }
+    }
+
+    /** What selectFilesToImport needs to know about earlier imports. */
+    private interface ImportedFiles {
+        /** True if source_file has the name (with or without a fingerprint). */
+        boolean isRecorded(String fileName) throws SQLException;
+
+        /** The name's recorded fingerprint, or null. */
+        FileFingerprint fingerprint(String fileName) throws SQLException;
+
+        /** A recorded file with the same size and content hash, or null. */
+        String fileWithContent(FileFingerprint fingerprint) throws SQLException;
+    }
+
+    /**
+     * Picks the files that hold text not imported yet, with their fingerprints:
+     *  - same name, size and modification time as a recorded file: skipped without reading it;
+     *  - otherwise the content is hashed, and skipped if any recorded file (under any name), or an
+     *    earlier file of this batch, has the same content;
+     *  - a recorded name whose content changed is refused: its earlier counts cannot be taken out
+ *    again, so importing it would count both versions; --rebuild re-imports the folder instead.
+     * Files recorded before fingerprints existed are taken as unchanged and get one stored.
+     */
+    private Map<Path, FileFingerprint> selectFilesToImport(List<Path> files, ImportedFiles imported) {
+        Map<Path, FileFingerprint> selected = new LinkedHashMap<>();
+        Map<String, Path> batchContent = new HashMap<>();
+        for (Path p : files) {
+            String name = p.getFileName().toString();
+            try {
+                FileFingerprint known = imported.fingerprint(name);
+                if (known != null && known.matchesStat(p)) {
+                    System.out.println("Already imported: " + name);
+                    continue;
                 }
 
-                // accumulate into global aggregates for one-time ID resolution
-                mergeWords(globalWords, r.words);
-                if (!wordsOnly) {
-                    mergeCounts(globalBigrams, r.bigramCounts);
-                    mergeCounts(globalTrigrams, r.trigramCounts);
+                FileFingerprint current = FileFingerprint.of(p);
+                if ((known != null && known.sameContent(current)) || (known == null && imported.isRecorded(name))) {
+                    // touched but unchanged, or imported before fingerprints: remember it for next time
+                    db.updateFingerprint(name, current);
+                    System.out.println("Already imported: " + name);
+                    continue;
+                }
+                String same = imported.fileWithContent(current);
+                if (same == null) {
+                    Path twin = batchContent.putIfAbsent(contentKey(current), p);
+                    if (twin != null) same = twin.getFileName().toString();
+                }
+                if (same != null) {
+                    System.out.println("Skipping " + name + ": same content as " + same);
+                    continue;
+                }
 
-                    mergeCounts(globalBiEndCounts, r.bigramEndCounts);
-                    mergeCounts(globalTriEndCounts, r.trigramEndCounts);
+                if (known != null) {
+                    System.err.println("Not importing " + name + ": it changed since it was imported, and its "
+                            + "earlier counts would stay. Run with --rebuild to re-import the folder.");
+                    continue;
                 }
+                selected.put(p, current);
+            } catch (IOException | SQLException e) {
+                System.err.println("Could not check " + name + ", skipping it: " + e.getMessage());
+            }
+        }
+        return selected;
+    }
+
+    private static String contentKey(FileFingerprint fingerprint) {
+        return fingerprint.size() + ":" + HexFormat.of().formatHex(fingerprint.contentHash());
+    }
+
+    /**
+     * word -> word_id cache, loaded on first use and kept for later imports by this instance, which
+     * must not outlive a clear or rebuild of the tables (see Javafx.importFile).
+     */
+    private WordIdCache wordCache() throws SQLException {
+        if (wordCache == null) {
+            wordCache = WordIdCache.load(db);
+            System.out.println("Loaded " + wordCache.size() + " word IDs.");
+        }
+        return wordCache;
+    }
+
+    /** Tokenizes and stores files that are known not to be imported yet, recording their fingerprints. */
+    private void importPending(Map<Path, FileFingerprint> pending, boolean wordsOnly, Tokenizer.Options aggregate,
+                               ImportPipeline pipeline) throws InterruptedException {
+        if (pending.isEmpty()) {
+            System.out.println("No new files to import.");
+            return;
+        }
+
+        // word -> word_id for the whole table, assigning ids of new words client-side
+        WordIdCache cache;
+        try {
+            cache = wordCache();
+        } catch (SQLException e) {
+            System.err.println("CRITICAL: Could not load word IDs from database. Aborting.");
+            e.printStackTrace();
+            return;
+        }
+        int knownWords = cache.size();
+
+        // global word/bigram/trigram totals, keyed by ids of global.dictionary
+        Tokenizer.Result global = new Tokenizer.Result(aggregate);
+        // files are scanned as UTF-8 bytes, without decoding them into Strings first
+        Tokenizer.Options perFile = new Tokenizer.Options()
+                .setEngine(Tokenizer.Engine.UTF8)
+                .setMaxOrder(aggregate.getMaxOrder());
+        if (global.topTrigrams != null && !wordsOnly) {
+            System.out.println("Trigrams: approximate, keeping at most " + aggregate.getMaxTrigrams()
+                    + " (" + global.topTrigrams.memoryBytes() / (1 << 20) + " MB)");
+        }
+
+        // ---- PER-FILE PASS: read -> tokenize -> write, overlapped across files ----
+        System.out.println("Importing " + pending.size() + " files (" + pipeline.getTokenizers() + " tokenizers, "
+                + pipeline.getWriters() + " writers)");
+        // n-grams of this run's files are written as one journaled batch; a words-only run has none
+        String batchId = wordsOnly ? null : UUID.randomUUID().toString();
+        // with a memory budget, n-grams are counted in memory up to it and spilled to disk beyond
+        SpillingAggregate spill;
+        try {
+            spill = (!wordsOnly && spills(aggregate)) ? new SpillingAggregate(global.maxOrder(), spillBytes) : null;
+        } catch (IOException ex) {
+            System.err.println("CRITICAL: Could not create the spill folder. Aborting: " + ex.getMessage());
+            return;
+        }
+        if (spill != null) {
+            System.out.println("N-gram counts: spilled to disk above " + (spillBytes >> 20) + " MB");
+        }
+        AtomicBoolean spillFailed = new AtomicBoolean();
+        // otherwise exact totals are merged into lock-striped tables and drained into global once at
+        // the end; approximate trigrams keep one sketch, so those merge under one lock
+        ConcurrentAggregate shared = (spill == null && global.topTrigrams == null)
+                ? new ConcurrentAggregate(global.maxOrder()) : null;
+        pipeline.run(new ArrayList<>(pending.keySet()),
+                p -> tokenize(p, perFile),
+                (p, r) -> {
+                    System.out.println(p.getFileName() + ": tokens " + r.tokenCount()
+                            + " | unique words " + r.dictionary.size());
+
+                    // words for THIS file with their cached ids (in id order so concurrent writers lock
+                    // rows in the same order), committed together with the file's source_file row;
+                    // if this throws, the pipeline reports the file and leaves it out of the aggregates
+                    List<Word> words = cache.toWords(r.dictionary);
+                    words.sort(Comparator.comparingInt(Word::getWordId));
+                    db.importFile(p.getFileName().toString(), r.tokenCount(), pending.get(p), words, batchId);
+                },
+                (p, r) -> {
+                    // accumulate into global aggregates for one-time ID resolution (on a tokenizer thread)
+                    if (spill != null) {
+                        try {
+                            spill.merge(r);
+                        } catch (IOException ex) {
+                            spillFailed.set(true);
+                            System.err.println("Spilling n-gram counts failed at " + p.getFileName() + ": " + ex.getMessage());
+                        }
+                    } else if (shared != null) {
+                        if (wordsOnly) shared.mergeWords(r);
+                        else shared.merge(r);
+                    } else {
+                        synchronized (global) {
+                            if (!wordsOnly) {
+                                global.merge(r);
+                            } else {
+                                for (int id = 0; id < r.dictionary.size(); id++) global.dictionary.add(r.dictionary.word(id));
+                            }
+                        }
+                    }
+                });
+        if (shared != null) shared.drainInto(global);
+
+        // ---- AFTER LOOP: finalize inserts ----
+        if (wordsOnly) {
+            System.out.println(global.dictionary.size() == 0
+                    ? "\nNothing to insert (no words collected)." : "\nWords-only run complete.");
+            return;
+        }
+
+        // Word IDs come from the cache; only the words it assigned in this run are checked against the table
+        try (spill) {
+            int changed = cache.reconcile();
+            System.out.println("\nAssigned " + (cache.size() - knownWords) + " new word IDs"
+                    + (changed > 0 ? " (" + changed + " replaced by the table's)." : "."));
+            // n-grams of a word that has no row (e.g. its only file failed) are left out
+            if (spill == null) {
+                writeNgrams(batchId, inMemory(global, storedIds(cache, global.dictionary)));
+            } else if (spillFailed.get()) {
+                // the batch stays pending without a journal, so the next run re-reads its files
+                System.err.println("Not writing n-grams: some counts could not be spilled.");
+            } else {
+                WordDictionary words = spill.finish();
+                System.out.println("Spilled n-gram counts " + spill.spills() + " times ("
+                        + (spill.spilledBytes() >> 20) + " MB); merging.");
+                writeNgrams(batchId, spilled(spill, storedIds(cache, words)));
             }
+        } catch (SQLException | IOException ex) {
+            System.err.println("Preparing n-grams failed: " + ex.getMessage());
+            ex.printStackTrace();
+        }
+    }
 
-            // ---- AFTER LOOP: finalize inserts ----
-            if (globalWords.isEmpty()) {
-                System.out.println("\nNothing to insert (no words collected).");
+    /** The cache's stored ids for dictionary, reporting words that have none. */
+    private static int[] storedIds(WordIdCache cache, WordDictionary dictionary) throws SQLException {
+        int[] ids = cache.storedIdsFor(dictionary);
+        int missing = 0;
+        for (int id : ids) if (id < 0) missing++;
+        if (missing > 0) {
+            System.err.println(missing + " word(s) are not in the words table; their n-grams are skipped.");
+        }
+        return ids;
+    }
+
+    /** Reads and tokenizes one file in chunks; a large one is split over the common ForkJoinPool. */
+    private static Tokenizer.Result tokenize(Path file, Tokenizer.Options perFile) throws IOException {
+        return Files.size(file) >= PARALLEL_FILE_BYTES
+                ? Tokenizer.processFileParallel(file, perFile)
+                : Tokenizer.processFile(file, perFile);
+    }
+
+    private boolean spills(Tokenizer.Options aggregate) {
+        return spillBytes > 0 && aggregate.getMaxTrigrams() == 0;
+    }
+
+    /**
+     * Re-imports every .txt file under root from scratch into rebuild copies of the tables and
+     * swaps them in at the end (see DatabaseManager.beginRebuild): words get ids 1..n from the
+     * cross-file dictionary (spellings the words collation treats as equal then share the first
+     * one's), every row is written once with a plain insert, and keys and foreign keys are added
+     * after the load. Whatever the tables held before, including files not under
+     * root, is replaced; until the swap they stay as they were.
+     *
+     * @param aggregate settings for the cross-file totals (e.g. approximate trigrams, n-gram order)
+     * @param pipeline  parallelism of the per-file tokenize / write stages
+     */
+    public void rebuild(Path root, Tokenizer.Options aggregate, ImportPipeline pipeline) {
+        System.out.println("Rebuilding from: " + root.toAbsolutePath());
+        SpillingAggregate spill = null;
+        boolean begun = false;
+        boolean swapped = false;
+        try {
+            List<Path> files = listTextFiles(root);
+            if (files.isEmpty()) {
+                System.out.println("No .txt files found. Nothing rebuilt.");
                 return;
             }
 
-            if (wordsOnly) {
-                System.out.println("\nWords-only run complete.");
-                return;
+            // one file per name and per content, as an import of each in turn would keep
+            Map<Path, FileFingerprint> selected = new LinkedHashMap<>();
+            Map<String, Path> names = new HashMap<>();
+            Map<String, Path> contents = new HashMap<>();
+            for (Path p : files) {
+                Path same = names.putIfAbsent(p.getFileName().toString(), p);
+                if (same != null) {
+                    System.out.println("Skipping " + p + ": same name as " + same);
+                    continue;
+                }
+                FileFingerprint fp = FileFingerprint.of(p);
+                same = contents.putIfAbsent(contentKey(fp), p);
+                if (same != null) {
+                    System.out.println("Skipping " + p.getFileName() + ": same content as " + same.getFileName());
+                    continue;
+                }
+                selected.put(p, fp);
             }
 
-            // Resolve word IDs once across the global set
-            Map<String, Integer> wordIds;
-            try {
-                wordIds = db.getWordIds(globalWords.values());
-                System.out.println("\nResolved " + wordIds.size() + " word IDs.");
-            } catch (SQLException ex) {
-                System.err.println("getWordIds failed: " + ex.getMessage());
-                ex.printStackTrace();
+            db.beginRebuild();
+            begun = true;
+            Tokenizer.Result global = new Tokenizer.Result(aggregate);
+            Tokenizer.Options perFile = new Tokenizer.Options()
+                    .setEngine(Tokenizer.Engine.UTF8)
+                    .setMaxOrder(aggregate.getMaxOrder());
+            spill = spills(aggregate) ? new SpillingAggregate(global.maxOrder(), spillBytes) : null;
+            SpillingAggregate spilling = spill;
+            ConcurrentAggregate shared = (global.topTrigrams == null) ? new ConcurrentAggregate(global.maxOrder()) : null;
+
+            System.out.println("Reading " + selected.size() + " files.");
+            List<Path> failed = pipeline.run(new ArrayList<>(selected.keySet()),
+                    p -> tokenize(p, perFile),
+                    (p, r) -> {
+                        System.out.println(p.getFileName() + ": tokens " + r.tokenCount()
+                                + " | unique words " + r.dictionary.size());
+                        db.rebuildSourceFile(p.getFileName().toString(), r.tokenCount(), selected.get(p));
+                    },
+                    (p, r) -> {
+                        // words are always totalled in memory; n-grams go to the spill when there is one
+                        if (spilling != null) {
+                            shared.mergeWords(r);
+                            spilling.merge(r);
+                        } else if (shared != null) {
+                            shared.merge(r);
+                        } else {
+                            synchronized (global) {
+                                global.merge(r);
+                            }
+                        }
+                    });
+            if (!failed.isEmpty()) {
+                // swapping in tables without these files would lose their counts
+                System.err.println("Rebuild stopped: " + failed.size() + " file(s) could not be read, tokenized or "
+                        + "stored: " + failed.stream().map(p -> p.getFileName().toString()).sorted()
+                        .collect(Collectors.joining(", ")) + ". The tables in use are unchanged.");
                 return;
             }
+            if (shared != null) shared.drainInto(global);
 
-            List<WordPair> pairs = toWordPairs(globalBigrams, globalBiEndCounts, wordIds);
-            System.out.println("Prepared " + pairs.size() + " word pairs. Inserting...");
-            try {
-                db.bulkAddWordPairs(pairs);
-                System.out.println("Inserted bigrams.");
-            } catch (SQLException ex) {
-                System.err.println("bulkAddWordPairs failed: " + ex.getMessage());
-                ex.printStackTrace();
+            // fresh ids: word_id = position in the cross-file dictionary + 1
+            List<Word> words = global.dictionary.toWords();
+            int[] wordIds = new int[words.size()];
+            for (int id = 0; id < wordIds.length; id++) {
+                wordIds[id] = id + 1;
+                words.get(id).setWordId(id + 1);
             }
+            db.rebuildWords(words);
+            // spellings the column's collation treats as one word share the row of the first
+            Map<Integer, Integer> folded = db.foldRebuildWords();
+            for (int id = 0; id < wordIds.length; id++) wordIds[id] = folded.getOrDefault(wordIds[id], wordIds[id]);
+            System.out.println("Inserted " + (words.size() - folded.size()) + " words"
+                    + (folded.isEmpty() ? "." : " (" + folded.size() + " spellings merged into an equal word)."));
 
-            List<WordTriplet> triplets = toWordTriplets(globalTrigrams, globalTriEndCounts, wordIds);
-            System.out.println("Prepared " + pairs.size() + " word triplets. Inserting...");
+            NgramParts parts;
+            if (spill == null) {
+                parts = inMemory(global, wordIds);
+            } else {
+                WordDictionary spilled = spill.finish();
+                int[] spilledIds = new int[spilled.size()];
+                for (int id = 0; id < spilledIds.length; id++) {
+                    int local = global.dictionary.idOf(spilled.word(id));
+                    spilledIds[id] = local < 0 ? -1 : wordIds[local];
+                }
+                parts = spilled(spill, spilledIds);
+            }
+            writeRebuildRows(parts, folded.isEmpty() ? null : new FoldedRows(new HashSet<>(folded.values())));
+
+            System.out.println("Adding keys and swapping in the rebuilt tables...");
+            db.finishRebuild();
+            swapped = true;
+            wordCache = null; // ids changed
+            for (Path journal : ImportJournal.list(journalDir)) Files.delete(journal); // batches of the old tables
+            System.out.println("Rebuild complete.");
+
+        } catch (IOException | SQLException ex) {
+            System.err.println("Rebuild failed; the tables in use are unchanged: " + ex.getMessage());
+            ex.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Rebuild interrupted; the tables in use are unchanged.");
+        } finally {
+            if (begun && !swapped) {
+                try {
+                    db.abortRebuild();
+                } catch (SQLException ex) {
+                    System.err.println("Could not drop the rebuild tables (the next rebuild drops them): " + ex.getMessage());
+                }
+            }
+            if (spill != null) {
+                try {
+                    spill.close();
+                } catch (IOException ex) {
+                    System.err.println("Could not delete spill files: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the rows through a temporary journal (for its chunking and partitions) into the rebuild
+     * tables, chunks written in parallel by dbWriters() connections. With folded words, the rows that
+     * may now repeat an n-gram are held back in folded and written once, added up, at the end.
+     */
+    private void writeRebuildRows(NgramParts parts, FoldedRows folded) throws IOException, SQLException {
+        Path dir = Files.createTempDirectory("sentencebuilder-rebuild");
+        Path journal = null;
+        try {
+            try (ImportJournal.Writer out = ImportJournal.create(dir, "rebuild", JOURNAL_CHUNK_ROWS, dbWriters())) {
+                parts.writeTo(out);
+                journal = out.commit();
+            }
+            try (PartitionedWriters writers = new PartitionedWriters(dbWriters())) {
+                ImportJournal.replay(journal, new ImportJournal.Chunks() {
+                    @Override
+                    public void wordPairs(int part, int chunk, int partition, List<WordPair> rows) throws SQLException {
+                        List<WordPair> kept = (folded == null) ? rows : folded.keepPairs(rows);
+                        writers.submit(partition, () -> db.rebuildWordPairs(kept));
+                    }
+
+                    @Override
+                    public void wordTriplets(int part, int chunk, int partition, List<WordTriplet> rows)
+                            throws SQLException {
+                        List<WordTriplet> kept = (folded == null) ? rows : folded.keepTriplets(rows);
+                        writers.submit(partition, () -> db.rebuildWordTriplets(kept));
+                    }
+
+                    @Override
+                    public void wordNgrams(int part, int chunk, int partition, List<WordNgram> rows) throws SQLException {
+                        List<WordNgram> kept = (folded == null) ? rows : folded.keepNgrams(rows);
+                        writers.submit(partition, () -> db.rebuildWordNgrams(kept));
+                    }
+                });
+                writers.finish();
+            }
+            if (folded != null) folded.writeTo(db);
+        } finally {
+            if (journal != null) Files.deleteIfExists(journal);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /**
+     * Rebuild rows that contain a word other spellings were folded into. Their ids were remapped,
+     * so two of them may now be the same n-gram, which the keys added by finishRebuild() would
+     * reject; they are added up here instead of being written as they come.
+     */
+    private static final class FoldedRows {
+        private final Set<Integer> into;
+        private final Map<List<Integer>, int[]> rows = new LinkedHashMap<>(); // word ids -> count, end count
+
+        FoldedRows(Set<Integer> into) {
+            this.into = into;
+        }
+
+        List<WordPair> keepPairs(List<WordPair> chunk) {
+            List<WordPair> kept = new ArrayList<>(chunk.size());
+            for (WordPair wp : chunk) {
+                if (!hold(wp.getOccurrenceCount(), wp.getEndFrequency(),
+                        wp.getPrecedingWordId(), wp.getFollowingWordId())) kept.add(wp);
+            }
+            return kept;
+        }
+
+        List<WordTriplet> keepTriplets(List<WordTriplet> chunk) {
+            List<WordTriplet> kept = new ArrayList<>(chunk.size());
+            for (WordTriplet wt : chunk) {
+                if (!hold(wt.getOccurrenceCount(), wt.getEndFrequency(),
+                        wt.getFirstWordId(), wt.getSecondWordId(), wt.getThirdWordId())) kept.add(wt);
+            }
+            return kept;
+        }
+
+        List<WordNgram> keepNgrams(List<WordNgram> chunk) {
+            List<WordNgram> kept = new ArrayList<>(chunk.size());
+            for (WordNgram wn : chunk) {
+                int[] ids = Arrays.copyOf(wn.getContextWordIds(), wn.getOrder());
+                ids[ids.length - 1] = wn.getNextWordId();
+                if (!hold(wn.getOccurrenceCount(), wn.getEndFrequency(), ids)) kept.add(wn);
+            }
+            return kept;
+        }
+
+        /** Adds the row to the held ones if it has a folded-into word; false if it can be written as is. */
+        private boolean hold(int count, int endCount, int... wordIds) {
+            boolean folded = false;
+            for (int id : wordIds) folded |= into.contains(id);
+            if (!folded) return false;
+            int[] totals = rows.computeIfAbsent(Arrays.stream(wordIds).boxed().toList(), k -> new int[2]);
+            totals[0] += count;
+            totals[1] += endCount;
+            return true;
+        }
+
+        void writeTo(DatabaseManager db) throws SQLException {
+            List<WordPair> pairs = new ArrayList<>();
+            List<WordTriplet> triplets = new ArrayList<>();
+            List<WordNgram> ngrams = new ArrayList<>();
+            rows.forEach((ids, totals) -> {
+                if (ids.size() == 2) {
+                    WordPair wp = new WordPair(ids.get(0), ids.get(1));
+                    wp.setOccurrenceCount(totals[0]);
+                    wp.setEndFrequency(totals[1]);
+                    pairs.add(wp);
+                } else if (ids.size() == 3) {
+                    WordTriplet wt = new WordTriplet(ids.get(0), ids.get(1), ids.get(2), totals[0]);
+                    wt.setEndFrequency(totals[1]);
+                    triplets.add(wt);
+                } else {
+                    int[] context = new int[ids.size() - 1];
+                    for (int j = 0; j < context.length; j++) context[j] = ids.get(j);
+                    WordNgram wn = new WordNgram(context, ids.get(context.length), totals[0]);
+                    wn.setEndFrequency(totals[1]);
+                    ngrams.add(wn);
+                }
+            });
+            if (!pairs.isEmpty()) db.rebuildWordPairs(pairs);
+            if (!triplets.isEmpty()) db.rebuildWordTriplets(triplets);
+            if (!ngrams.isEmpty()) db.rebuildWordNgrams(ngrams);
+            System.out.println("Merged " + rows.size() + " n-grams of folded words.");
+        }
+    }
+
+    /**
+     * Finishes imports a previous run left part way: replays the journals still in journalDir, then
+     * re-reads the files of any batch that never got as far as its journal (among candidates) and
+     * writes their n-grams. Their words are in the table already, so only n-grams are written.
+     */
+    private void resumeUnfinishedImports(List<Path> candidates, Tokenizer.Options aggregate) {
+        Map<String, List<String>> unfinished;
+        try {
+            for (Path journal : ImportJournal.list(journalDir)) {
+                System.out.println("Resuming import journal " + journal.getFileName());
+                replay(journal);
+            }
+            unfinished = db.getPendingFiles();
+        } catch (IOException | SQLException ex) {
+            System.err.println("Could not check for unfinished imports: " + ex.getMessage());
+            return;
+        }
+
+        Map<String, Path> byName = new HashMap<>();
+        for (Path p : candidates) byName.putIfAbsent(p.getFileName().toString(), p);
+        Tokenizer.Options perFile = new Tokenizer.Options()
+                .setEngine(Tokenizer.Engine.UTF8)
+                .setMaxOrder(aggregate.getMaxOrder());
+        unfinished.forEach((batchId, names) -> {
+            if (Files.exists(ImportJournal.fileOf(journalDir, batchId))) return; // replay failed above; try again next run
+            List<String> missing = names.stream().filter(n -> !byName.containsKey(n)).toList();
+            if (!missing.isEmpty()) {
+                System.err.println("Import batch " + batchId + " is unfinished, but " + missing
+                        + " are not among the files to import; import their folder to finish it.");
+                return;
+            }
+            System.out.println("Resuming import batch " + batchId + ": re-reading " + names.size()
+                    + " files for their n-grams.");
             try {
-                db.bulkAddWordTriplets(triplets);
-                System.out.println("Inserted Trigrams.");
-            } catch (SQLException ex) {
-                System.err.println("bulkAddWordTrigrams failed: " + ex.getMessage());
+                if (spills(aggregate)) {
+                    try (SpillingAggregate spill = new SpillingAggregate(aggregate.getMaxOrder(), spillBytes)) {
+                        for (String name : names) {
+                            spill.merge(tokenize(byName.get(name), perFile));
+                        }
+                        writeNgrams(batchId, spilled(spill, storedIds(wordCache(), spill.finish())));
+                    }
+                } else {
+                    Tokenizer.Result global = new Tokenizer.Result(aggregate);
+                    for (String name : names) {
+                        global.merge(tokenize(byName.get(name), perFile));
+                    }
+                    writeNgrams(batchId, inMemory(global, storedIds(wordCache(), global.dictionary)));
+                }
+            } catch (IOException | SQLException ex) {
+                System.err.println("Resuming import batch " + batchId + " failed: " + ex.getMessage());
                 ex.printStackTrace();
             }
+        });
+    }
 
-        } catch (IOException e) {
-            e.printStackTrace();
+    /** A batch's n-gram rows, as parts of a journal. */
+    private interface NgramParts {
+        void writeTo(ImportJournal.Writer out) throws IOException;
+    }
+
+    /** Rows of the totals in global, with word ids from wordIds. */
+    private static NgramParts inMemory(Tokenizer.Result global, int[] wordIds) {
+        return out -> {
+            List<WordPair> pairs = toWordPairs(global.bigrams, wordIds);
+            System.out.println("Prepared " + pairs.size() + " word pairs.");
+            out.addWordPairs(pairs);
+
+            if (global.topTrigrams != null) {
+                System.out.println("Kept " + global.topTrigrams.size() + " heavy-hitter trigrams of "
+                        + global.topTrigrams.totalCount() + " trigram occurrences.");
+            }
+            List<WordTriplet> triplets = toWordTriplets(global.trigramCounts(), global.bigrams, wordIds);
+            System.out.println("Prepared " + triplets.size() + " word triplets.");
+            out.addWordTriplets(triplets);
+
+            for (int order = 4; order <= global.maxOrder(); order++) {
+                List<WordNgram> ngrams = toWordNgrams(global, order, wordIds);
+                System.out.println("Prepared " + ngrams.size() + " " + order + "-grams.");
+                out.addWordNgrams(order, ngrams);
+            }
+        };
+    }
+
+    /** Rows merged from spill's runs straight into the journal, one order at a time. */
+    private static NgramParts spilled(SpillingAggregate spill, int[] wordIds) {
+        return out -> {
+            for (int order = 2; order <= spill.maxOrder(); order++) {
+                out.startPart(order);
+                long rows = spill.drain(order, wordIds, out::add);
+                out.endPart();
+                System.out.println("Prepared " + rows + " " + order + "-grams.");
+            }
+        };
+    }
+
+    /** Writes the batch's n-gram rows to its journal, then applies the journal. */
+    private void writeNgrams(String batchId, NgramParts parts) {
+        Path journal;
+        try (ImportJournal.Writer out = ImportJournal.create(journalDir, batchId, JOURNAL_CHUNK_ROWS, dbWriters())) {
+            parts.writeTo(out);
+            journal = out.commit();
+        } catch (IOException ex) {
+            // the batch stays pending without a journal, so the next run re-reads its files
+            System.err.println("Could not write the import journal: " + ex.getMessage());
+            ex.printStackTrace();
+            return;
         }
+        replay(journal);
     }
 
+    /**
+     * Applies every chunk of a journal that is not applied yet, then completes its batch and
+     * deletes it. A failure leaves the journal for the next run.
+     */
+    private void replay(Path journal) {
+        String batchId = ImportJournal.batchIdOf(journal);
+        try {
+            if (!db.isBatchPending(batchId)) {
+                // completed before the journal could be deleted
+                Files.delete(journal);
+                return;
+            }
+            AtomicLong applied = new AtomicLong();
+            AtomicInteger skipped = new AtomicInteger();
+            // LOAD DATA or not is decided per table, from all of the rows the batch has for it
+            long[] orderRows = ImportJournal.rowsByOrder(journal);
+            long ngramRows = 0;
+            for (int order = 4; order < orderRows.length; order++) ngramRows += orderRows[order];
+            boolean bulkPairs = orderRows[2] >= bulkLoadRows;
+            boolean bulkTriplets = orderRows[3] >= bulkLoadRows;
+            boolean bulkNgrams = ngramRows >= bulkLoadRows;
+            // chunks of one partition go through one writer; partitions own disjoint key ranges
+            try (PartitionedWriters writers = new PartitionedWriters(dbWriters())) {
+                ImportJournal.replay(journal, new ImportJournal.Chunks() {
+                    @Override
+                    public void wordPairs(int part, int chunk, int partition, List<WordPair> rows) throws SQLException {
+                        writers.submit(partition, () -> count(applied, skipped, rows.size(), apply("word pairs",
+                                bulkPairs, load -> db.applyWordPairs(batchId, part, chunk, rows, load))));
+                    }
+
+                    @Override
+                    public void wordTriplets(int part, int chunk, int partition, List<WordTriplet> rows)
+                            throws SQLException {
+                        writers.submit(partition, () -> count(applied, skipped, rows.size(), apply("word triplets",
+                                bulkTriplets, load -> db.applyWordTriplets(batchId, part, chunk, rows, load))));
+                    }
+
+                    @Override
+                    public void wordNgrams(int part, int chunk, int partition, List<WordNgram> rows) throws SQLException {
+                        writers.submit(partition, () -> count(applied, skipped, rows.size(), apply("n-grams",
+                                bulkNgrams, load -> db.applyWordNgrams(batchId, part, chunk, rows, load))));
+                    }
+                });
+                writers.finish();
+            }
+            db.completeBatch(batchId);
+            Files.delete(journal);
+            System.out.println("Inserted " + applied.get() + " n-gram rows"
+                    + (skipped.get() > 0 ? " (" + skipped.get() + " chunks were already in from an earlier run)." : "."));
+        } catch (IOException | SQLException ex) {
+            System.err.println("Applying " + journal.getFileName() + " failed; the next import resumes it: "
+                    + ex.getMessage());
+            ex.printStackTrace();
+        }
+    }
+
+    private static void count(AtomicLong applied, AtomicInteger skipped, int rows, boolean written) {
+        if (written) applied.addAndGet(rows);
+        else skipped.incrementAndGet();
+    }
 
     public static void main(String[] args) {
         boolean wordsOnly = Arrays.asList(args).contains("--words-only");
+        Tokenizer.Options aggregate = new Tokenizer.Options();
+        int maxTrigrams = 0;
+        double trigramError = aggregate.getTrigramEpsilon();
+        int order = aggregate.getMaxOrder();
+        int bulkLoadRows = DEFAULT_BULK_LOAD_ROWS;
+        int batchSize = DatabaseManager.DEFAULT_BATCH_SIZE;
+        long spillMb = 0;
+        int dbWriters = 0;
+        ImportPipeline pipeline = new ImportPipeline();
+        for (String a : args) {
+            if (a.startsWith("--tokenizers=")) pipeline.setTokenizers(Integer.parseInt(a.substring("--tokenizers=".length())));
+            if (a.startsWith("--writers=")) pipeline.setWriters(Integer.parseInt(a.substring("--writers=".length())));
+            if (a.startsWith("--queue=")) pipeline.setQueueCapacity(Integer.parseInt(a.substring("--queue=".length())));
+            if (a.startsWith("--approx-trigrams=")) maxTrigrams = Integer.parseInt(a.substring("--approx-trigrams=".length()));
+            if (a.startsWith("--trigram-error=")) trigramError = Double.parseDouble(a.substring("--trigram-error=".length()));
+            if (a.startsWith("--order=")) order = Integer.parseInt(a.substring("--order=".length()));
+            if (a.startsWith("--bulk-load-rows=")) bulkLoadRows = Integer.parseInt(a.substring("--bulk-load-rows=".length()));
+            if (a.startsWith("--batch-size=")) batchSize = Integer.parseInt(a.substring("--batch-size=".length()));
+            if (a.startsWith("--db-writers=")) dbWriters = Integer.parseInt(a.substring("--db-writers=".length()));
+            if (a.startsWith("--spill-mb=")) spillMb = Long.parseLong(a.substring("--spill-mb=".length()));
+        }
+        if (maxTrigrams > 0 && order > 3) {
+            System.err.println("--order=" + order + " needs exact trigrams; drop --approx-trigrams.");
+            return;
+        }
+        boolean rebuild = Arrays.asList(args).contains("--rebuild");
+        if (rebuild && wordsOnly) {
+            System.err.println("--rebuild stores words and n-grams; drop --words-only.");
+            return;
+        }
+        if (maxTrigrams > 0 && spillMb > 0) {
+            System.err.println("--spill-mb needs exact trigrams; drop --approx-trigrams.");
+            return;
+        }
+        aggregate.setMaxOrder(order);
+        if (maxTrigrams > 0) {
+            aggregate.setApproximateTrigrams(maxTrigrams, trigramError, aggregate.getTrigramDelta());
+        }
         Path root = Arrays.stream(args)
                 .filter(a -> !a.startsWith("--"))
                 .findFirst()
@@ -166,15 +931,45 @@ public class ImporterCli {
                 .orElse(Path.of("data/clean"));
 
         // CLI mode: create the pool once, run, then close it.
-        DatabaseManager db = new DatabaseManager();
+        DatabaseManager db = new DatabaseManager().setBatchSize(batchSize);
         try {
-            new ImporterCli(db).run(root, wordsOnly);
+            ImporterCli importer = new ImporterCli(db)
+                    .setBulkLoadRows(bulkLoadRows)
+                    .setSpillBudget(spillMb << 20);
+            if (dbWriters > 0) importer.setDbWriters(dbWriters);
+            if (rebuild) importer.rebuild(root, aggregate, pipeline);
+            else importer.run(root, wordsOnly, aggregate, pipeline);
         } finally {
             DatabaseManager.closeDataSource();
         }
     }
 
 
+    private interface Chunk {
+        boolean apply(boolean load) throws SQLException;
+    }
+
+    /**
+     * Applies a chunk with LOAD DATA when bulk is set (its table gets at least bulkLoadRows rows from
+     * the batch), else with batched inserts. A failed load (e.g. local_infile off on the server) is
+     * rolled back, so it falls back; later chunks then skip LOAD DATA for the rest of the run.
+     *
+     * @return false if the chunk had been applied before
+     */
+    private boolean apply(String what, boolean bulk, Chunk chunk) throws SQLException {
+        if (bulk && !loadFailed.get()) {
+            try {
+                return chunk.apply(true);
+            } catch (SQLException ex) {
+                if (!loadFailed.getAndSet(true)) {
+                    System.err.println("LOAD DATA failed for " + what + " (" + ex.getMessage()
+                            + "); using batched inserts for the rest of the run.");
+                }
+            }
+        }
+        return chunk.apply(false);
+    }
+
     private static List<Path> listTextFiles(Path root) throws IOException {
         if (!Files.exists(root)) return List.of();
         if (Files.isRegularFile(root) && root.toString().toLowerCase().endsWith(".txt")) return List.of(root);
@@ -185,53 +980,21 @@ public class ImporterCli {
         }
     }
 
-    private static void mergeWords(Map<String, Word> target, Map<String, Word> src) {
-        for (var e : src.entrySet()) {
-            String w = e.getKey();
-            Word from = e.getValue();
-            Word into = target.get(w);
-            if (into == null) {
-                into = new Word();
-                into.setWordValue(w);
-                into.setTotalOccurrences(0);
-                into.setStartSentenceCount(0);
-                into.setEndSequenceCount(0);
-                target.put(w, into);
-            }
-            into.setTotalOccurrences(into.getTotalOccurrences() + from.getTotalOccurrences());
-            into.setStartSentenceCount(into.getStartSentenceCount() + from.getStartSentenceCount());
-            into.setEndSequenceCount(into.getEndSequenceCount() + from.getEndSequenceCount());
-        }
-    }
-
-    private static void mergeCounts(Map<String,Integer> target, Map<String,Integer> src) {
-        for (var e : src.entrySet()) {
-            target.merge(e.getKey(), e.getValue(), Integer::sum);
-        }
-    }
-
-    private static List<WordPair> toWordPairs(Map<String,Integer> bigrams,
-                                              Map<String,Integer> bigramEndCounts,
-                                              Map<String, Integer> wordIds) {
-        List<WordPair> out = new ArrayList<>();
+    private static List<WordPair> toWordPairs(NgramCounter bigrams, int[] wordIds) {
+        List<WordPair> out = new ArrayList<>(bigrams.size());
 
-        for (var entry : bigrams.entrySet()) {
-            String bigramKey = entry.getKey();
+        for (int slot = 0; slot < bigrams.size(); slot++) {
+            long key = bigrams.key(slot);
 
-            String[] parts = entry.getKey().split(" ");
-            if (parts.length != 2) continue;  // sanity check
-
-            Integer firstId = wordIds.get(parts[0]);
-            Integer secondId = wordIds.get(parts[1]);
-            if (firstId == null || secondId == null) continue;
-
-            int biEndFrequency = bigramEndCounts.getOrDefault(bigramKey, 0);
+            int firstId = wordIds[NgramCounter.high(key)];
+            int secondId = wordIds[NgramCounter.low(key)];
+            if (firstId < 0 || secondId < 0) continue;
 
             WordPair wp = new WordPair();
             wp.setPrecedingWordId(firstId);
             wp.setFollowingWordId(secondId);
-            wp.setOccurrenceCount(entry.getValue());
-            wp.setEndFrequency(biEndFrequency);
+            wp.setOccurrenceCount(bigrams.count(slot));
+            wp.setEndFrequency(bigrams.endCount(slot));
             out.add(wp);
         }
         return out;
@@ -239,33 +1002,58 @@ public class ImporterCli {
 
 
     //vincentphan
-    private static List<WordTriplet> toWordTriplets(Map<String,Integer> trigrams,
-                                                    Map<String, Integer> trigramEndCounts,
-                                                    Map<String,Integer> wordIds) {
-        List<WordTriplet> out = new ArrayList<>();
-
-        for (var entry : trigrams.entrySet()) {
-            String trigramKey = entry.getKey();
+    private static List<WordTriplet> toWordTriplets(NgramCounter trigrams,
+                                                    NgramCounter bigrams,
+                                                    int[] wordIds) {
+        List<WordTriplet> out = new ArrayList<>(trigrams.size());
 
-            String[] parts = entry.getKey().split(" ");
-            if (parts.length != 3) continue;  // sanity check
+        for (int slot = 0; slot < trigrams.size(); slot++) {
+            long key = trigrams.key(slot);
+            long prefix = bigrams.key(NgramCounter.high(key));  // (w1, w2)
 
-            Integer firstId = wordIds.get(parts[0]);
-            Integer secondId = wordIds.get(parts[1]);
-            Integer thirdId = wordIds.get(parts[2]);
-            if (firstId == null || secondId == null || thirdId == null) continue;
-
-            int triEndFrequency = trigramEndCounts.getOrDefault(trigramKey, 0);
+            int firstId = wordIds[NgramCounter.high(prefix)];
+            int secondId = wordIds[NgramCounter.low(prefix)];
+            int thirdId = wordIds[NgramCounter.low(key)];
+            if (firstId < 0 || secondId < 0 || thirdId < 0) continue;
 
             WordTriplet wt = new WordTriplet();
             wt.setFirstWordId(firstId);
             wt.setSecondWordId(secondId);
             wt.setThirdWordId(thirdId);
-            wt.setOccurrenceCount(entry.getValue());
-            wt.setEndFrequency(triEndFrequency);
+            wt.setOccurrenceCount(trigrams.count(slot));
+            wt.setEndFrequency(trigrams.endCount(slot));
             out.add(wt);
         }
         return out;
     }
 
-}
+    /** Rows for ngram_sequence: each n-gram's words, found by walking its prefix slots down to the bigram. */
+    private static List<WordNgram> toWordNgrams(Tokenizer.Result result, int order, int[] wordIds) {
+        NgramCounter ngrams = result.ngramCounts(order);
+        List<WordNgram> out = new ArrayList<>(ngrams.size());
+        int[] ids = new int[order];
+
+        for (int slot = 0; slot < ngrams.size(); slot++) {
+            long key = ngrams.key(slot);
+            ids[order - 1] = wordIds[NgramCounter.low(key)];
+            for (int k = order - 1; k >= 2; k--) {
+                key = result.ngramCounts(k).key(NgramCounter.high(key));
+                ids[k - 1] = wordIds[NgramCounter.low(key)];
+            }
+            ids[0] = wordIds[NgramCounter.high(key)];
+
+            boolean resolved = true;
+            for (int id : ids) resolved &= id >= 0;
+            if (!resolved) continue;
+
+            WordNgram wn = new WordNgram();
+            wn.setContextWordIds(Arrays.copyOf(ids, order - 1));
+            wn.setNextWordId(ids[order - 1]);
+            wn.setOccurrenceCount(ngrams.count(slot));
+            wn.setEndFrequency(ngrams.endCount(slot));
+            out.add(wn);
+        }
+        return out;
+    }
+
+}
\ No newline at end of file
@@ -172,7 +172,11 @@ public class Javafx extends Application {
                 "bi_greedy",
                 "bi_weighted",
                 "tri_greedy",
-                "tri_weighted"
+                "tri_weighted",
+                "4gram_greedy",
+                "4gram_weighted",
+                "5gram_greedy",
+                "5gram_weighted"
         );
         algoDropdown.setValue("bi_greedy");
         algoDropdown.setPrefWidth(180);
@@ -398,9 +402,10 @@ public class Javafx extends Application {
             System.out.println("File saved");
 
             //Kevin Tran
-            //Uses the shared DatabaseManager instance to import the file
-            boolean wordsOnly = false;
-            new ImporterCli(db).run(Path.of("data/clean"), wordsOnly);
+            //Uses the shared DatabaseManager instance to import just this file.
+            //A new importer each time: its word id cache would go stale if the tables
+            //were cleared or rebuilt between uploads.
+            new ImporterCli(db).importFiles(List.of(dest));
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,141 @@
+/**
+ * NgramCounter.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Open-addressing hash table from a packed long key to an occurrence count
+ *  and an end-of-sentence count, stored in primitive arrays (no boxing, no
+ *  per-entry objects). Every distinct key also gets a dense slot number in
+ *  insertion order, which is how trigrams refer to their (w1, w2) prefix:
+ *
+ *    bigram key  = pack(w1, w2)
+ *    trigram key = pack(slot of (w1, w2) in the bigram counter, w3)
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.util.Arrays;
+
+public class NgramCounter {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // dense per-slot data, in insertion order
+    private long[] keys;
+    private int[] counts;
+    private int[] endCounts;
+    private int size;
+
+    // hash index: slot + 1, or 0 for an empty bucket (length is a power of two)
+    private int[] table;
+
+    public NgramCounter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public NgramCounter(int expectedSize) {
+        int cap = Math.max(INITIAL_CAPACITY, expectedSize);
+        keys = new long[cap];
+        counts = new int[cap];
+        endCounts = new int[cap];
+        table = new int[tableSizeFor(cap)];
+    }
+
+    /** Packs two non-negative ints into one key (hi in the upper 32 bits). */
+    public static long pack(int hi, int lo) {
+        return (((long) hi) << 32) | (lo & 0xffffffffL);
+    }
+
+    public static int high(long key) {
+        return (int) (key >>> 32);
+    }
+
+    public static int low(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Adds count/endCount to key, inserting it if needed.
+     * @return the slot of key
+     */
+    public int add(long key, int count, int endCount) {
+        int mask = table.length - 1;
+        int b = hash(key) & mask;
+        for (int e = table[b]; e != 0; e = table[b]) {
+            if (keys[e - 1] == key) {
+                counts[e - 1] += count;
+                endCounts[e - 1] += endCount;
+                return e - 1;
+            }
+            b = (b + 1) & mask;
+        }
+
+        int slot = size++;
+        if (slot == keys.length) grow();
+        keys[slot] = key;
+        counts[slot] = count;
+        endCounts[slot] = endCount;
+        table[b] = slot + 1;
+        if (size * 2 > table.length) rehash(table.length * 2);
+        return slot;
+    }
+
+    /** @return the slot of key, or -1 if it has not been added */
+    public int indexOf(long key) {
+        int mask = table.length - 1;
+        int b = hash(key) & mask;
+        for (int e = table[b]; e != 0; e = table[b]) {
+            if (keys[e - 1] == key) return e - 1;
+            b = (b + 1) & mask;
+        }
+        return -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long key(int slot) {
+        return keys[slot];
+    }
+
+    public int count(int slot) {
+        return counts[slot];
+    }
+
+    public int endCount(int slot) {
+        return endCounts[slot];
+    }
+
+    /** Bytes held by the arrays, spare capacity included (excluding object headers). */
+    public long memoryBytes() {
+        return 16L * keys.length + 4L * table.length;
+    }
+
+    private void grow() {
+        int cap = keys.length + (keys.length >> 1);
+        keys = Arrays.copyOf(keys, cap);
+        counts = Arrays.copyOf(counts, cap);
+        endCounts = Arrays.copyOf(endCounts, cap);
+    }
+
+    private void rehash(int newLength) {
+        int[] t = new int[newLength];
+        int mask = newLength - 1;
+        for (int slot = 0; slot < size; slot++) {
+            int b = hash(keys[slot]) & mask;
+            while (t[b] != 0) b = (b + 1) & mask;
+            t[b] = slot + 1;
+        }
+        table = t;
+    }
+
+    private static int tableSizeFor(int entries) {
+        return Integer.highestOneBit(Math.max(entries, 8) * 2 - 1) << 1;
+    }
+
+    static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ *  NgramGenerator.java
+ *  CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ *  Description:
+ *  Order-N sentence generator (N = 4 or 5) with back-off.
+ *
+ *  Conditions on the last N-1 words:
+ *      (w1, ..., wN-1) → (wN, count), most frequent first
+ *  and when that context was never seen, backs off to the last N-2 words,
+ *  and so on down to trigrams (w1, w2) and bigrams (w1). Greedy mode takes
+ *  the most frequent follower, weighted mode a count-weighted random one.
+ *
+ *  All data comes from GeneratorDataController (no DB queries here).
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.util.*;
+
+public class NgramGenerator implements SentenceGenerator {
+
+    private static final int DEFAULT_MAX_TOKENS = 20;
+    private static final int MAX_ATTEMPTS = 10;
+    private final Random random = new Random();
+
+    private final int order;
+    private final boolean greedy;
+
+    private final Map<String, Integer> wordToId;
+    private final Map<Integer, String> idToWord;
+    // order (4, 5) -> packed context -> (next, count), sorted desc by count
+    private final Map<Integer, FollowerTable> ngramFollowers;
+    private final FollowerTable trigramFollowers;
+    private final FollowerTable bigramFollowers;
+    private final List<int[]> startCandidates;
+
+    public NgramGenerator(int order,
+                          boolean greedy,
+                          Map<String, Integer> wordToId,
+                          Map<Integer, String> idToWord,
+                          Map<Integer, FollowerTable> ngramFollowers,
+                          FollowerTable trigramFollowers,
+                          FollowerTable bigramFollowers,
+                          List<int[]> startCandidates) {
+        this.order            = order;
+        this.greedy           = greedy;
+        this.wordToId         = wordToId;
+        this.idToWord         = idToWord;
+        this.ngramFollowers   = ngramFollowers;
+        this.trigramFollowers = trigramFollowers;
+        this.bigramFollowers  = bigramFollowers;
+        this.startCandidates  = startCandidates;
+    }
+
+    @Override
+    public String getName() {
+        return "Ngram" + order + (greedy ? "Greedy" : "Weighted") + "Generator";
+    }
+
+    @Override
+    public String generateSentence() {
+        return generateSentence(DEFAULT_MAX_TOKENS, null);
+    }
+
+    @Override
+    public String generateSentence(List<String> startingWords) {
+        return generateSentence(startingWords, DEFAULT_MAX_TOKENS, null);
+    }
+
+    @Override
+    public String generateSentence(int maxTokens, String stopWord) {
+        return generateSentence(List.of(), maxTokens, stopWord);
+    }
+
+    @Override
+    public String generateSentence(List<String> startingWords, int maxTokens, String stopWord) {
+        List<Integer> seed = new ArrayList<>();
+        if (startingWords != null) {
+            for (String w : startingWords) {
+                if (w == null || w.isBlank()) continue;
+                Integer id = wordToId.get(w.toLowerCase(Locale.ROOT));
+                if (id != null) seed.add(id);
+            }
+        }
+
+        if (seed.isEmpty()) {
+            if (startCandidates.isEmpty()) return "";
+            seed.add(greedy ? startCandidates.get(0)[0] : chooseWeighted(startCandidates));
+        }
+        return buildSentence(seed, maxTokens, stopWord);
+    }
+
+    // ---------- internals ----------
+
+    private String buildSentence(List<Integer> seed, int maxTokens, String stopWordRaw) {
+        final String stopWord =
+                (stopWordRaw == null ? null : stopWordRaw.toLowerCase(Locale.ROOT));
+
+        List<Integer> ids = new ArrayList<>(seed);
+        Set<String> usedNgrams = new HashSet<>();
+
+        while (ids.size() < Math.max(1, maxTokens)) {
+            int nextId = -1;
+            // longest context first, then back off one word at a time
+            for (int n = Math.min(order, ids.size() + 1); n >= 2 && nextId == -1; n--) {
+                FollowerTable followers = followers(n);
+                int context = (followers == null) ? -1 : find(followers, ids, n);
+                if (context < 0) continue;
+                nextId = choose(ids, followers, context, usedNgrams);
+            }
+            if (nextId == -1) break;
+
+            ids.add(nextId);
+
+            if (stopWord != null) {
+                String w = idToWord.getOrDefault(nextId, "").toLowerCase(Locale.ROOT);
+                if (w.equals(stopWord)) break;
+            }
+        }
+
+        return render(ids);
+    }
+
+    /** Followers of order-n contexts, or null if that order is not loaded. */
+    private FollowerTable followers(int n) {
+        switch (n) {
+            case 2:
+                return bigramFollowers;
+            case 3:
+                return trigramFollowers;
+            default:
+                return ngramFollowers.get(n);
+        }
+    }
+
+    /** Index of the context made of the last n-1 ids in followers, or -1. */
+    private static int find(FollowerTable followers, List<Integer> ids, int n) {
+        int size = ids.size();
+        switch (n) {
+            case 2:
+                return followers.find(ids.get(size - 1));
+            case 3:
+                return followers.find(NgramCounter.pack(ids.get(size - 2), ids.get(size - 1)));
+            default:
+                NgramKey key = NgramKey.ofLast(ids, n - 1);
+                return followers.find(key.hi(), key.lo());
+        }
+    }
+
+    /**
+     * Picks a follower whose full-order n-gram (with the words before it) has not been used
+     * yet in this sentence, so the generator does not loop; -1 if there is none.
+     */
+    private int choose(List<Integer> ids, FollowerTable followers, int c, Set<String> usedNgrams) {
+        String context = ids.subList(Math.max(0, ids.size() - (order - 1)), ids.size()).toString();
+
+        if (greedy) {
+            for (int row = followers.first(c); row < followers.end(c); row++) {
+                if (usedNgrams.add(context + followers.next(row))) return followers.next(row);
+            }
+            return -1;
+        }
+        for (int attempts = 0; attempts < MAX_ATTEMPTS; attempts++) {
+            int candId = chooseWeighted(followers, c);
+            if (usedNgrams.add(context + candId)) return candId;
+        }
+        return -1;
+    }
+
+    private int chooseWeighted(List<int[]> cands) {
+        int total = 0;
+        for (int[] c : cands) total += c[1];
+
+        int roll = random.nextInt(total);
+        int cumulative = 0;
+        for (int[] c : cands) {
+            cumulative += c[1];
+            if (roll < cumulative) return c[0];
+        }
+        return cands.get(0)[0];
+    }
+
+    private int chooseWeighted(FollowerTable followers, int c) {
+        int roll = random.nextInt(followers.total(c));
+        int cumulative = 0;
+        for (int row = followers.first(c); row < followers.end(c); row++) {
+            cumulative += followers.count(row);
+            if (roll < cumulative) return followers.next(row);
+        }
+        return followers.next(followers.first(c));
+    }
+
+    private String render(List<Integer> ids) {
+        StringBuilder sb = new StringBuilder();
+        for (Integer id : ids) {
+            String w = idToWord.getOrDefault(id, "?");
+            if (sb.length() > 0) sb.append(' ');
+            sb.append(w);
+        }
+        return sb.toString();
+    }
+}
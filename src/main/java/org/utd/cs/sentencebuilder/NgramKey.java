@@ -0,0 +1,55 @@
+/**
+ * NgramKey.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Context of an order-N n-gram (its first N-1 word ids, N up to 5) packed
+ *  into two longs, the way a (w1, w2) trigram context is packed into one:
+ *
+ *    hi = pack(w1, w2), lo = pack(w3, w4)   (unused positions are 0)
+ *
+ *  Keys of different lengths are kept apart by their order (one map or table
+ *  partition per order), so the padding never collides. The 16 bytes are also
+ *  the context_ids column of the ngram_sequence table.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+public record NgramKey(long hi, long lo) {
+
+    /** Most word ids a key holds (the context of a 5-gram). */
+    public static final int MAX_WORDS = 4;
+
+    /** Packs ids[from, from + count) (count <= MAX_WORDS). */
+    public static NgramKey of(int[] ids, int from, int count) {
+        if (count > MAX_WORDS) throw new IllegalArgumentException("context longer than " + MAX_WORDS + " words");
+        int[] w = new int[MAX_WORDS];
+        System.arraycopy(ids, from, w, 0, count);
+        return new NgramKey(NgramCounter.pack(w[0], w[1]), NgramCounter.pack(w[2], w[3]));
+    }
+
+    /** Packs the last count ids of a list. */
+    public static NgramKey ofLast(List<Integer> ids, int count) {
+        int[] w = new int[count];
+        for (int i = 0; i < count; i++) w[i] = ids.get(ids.size() - count + i);
+        return of(w, 0, count);
+    }
+
+    /** The id at position i (0 .. MAX_WORDS - 1). */
+    public int word(int i) {
+        long half = (i < 2) ? hi : lo;
+        return (i % 2 == 0) ? NgramCounter.high(half) : NgramCounter.low(half);
+    }
+
+    public byte[] toBytes() {
+        return ByteBuffer.allocate(16).putLong(hi).putLong(lo).array();
+    }
+
+    public static NgramKey fromBytes(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        return new NgramKey(buf.getLong(), buf.getLong());
+    }
+}
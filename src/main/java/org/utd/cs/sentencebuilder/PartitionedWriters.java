@@ -0,0 +1,115 @@
+/**
+ * PartitionedWriters.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  A fixed set of writer threads ("lanes"), each with its own small queue, for
+ *  database writes that are partitioned by key. Every write of a partition goes to
+ *  the same lane (partition % lanes), so writes of one partition run one after the
+ *  other and writes of different partitions run in parallel. When the partitions
+ *  own disjoint key ranges (as ImportJournal's chunks do), no two lanes ever wait
+ *  on the same rows, and throughput grows with the lanes (up to the pool size).
+ *
+ *  A full queue blocks submit(), which bounds the chunks held in memory. After a
+ *  write fails the rest are skipped, and finish() reports the first failure.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class PartitionedWriters implements AutoCloseable {
+
+    /** One write, e.g. one journal chunk in its own transaction. */
+    public interface Write {
+        void run() throws SQLException;
+    }
+
+    // writes waiting per lane besides the one running
+    private static final int QUEUE_CAPACITY = 2;
+    private static final Write END = () -> {};
+
+    private final List<BlockingQueue<Write>> queues = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private final AtomicReference<SQLException> failure = new AtomicReference<>();
+
+    /** @param lanes writer threads, each using one connection at a time */
+    public PartitionedWriters(int lanes) {
+        if (lanes < 1) throw new IllegalArgumentException("writers must be at least 1");
+        for (int i = 0; i < lanes; i++) {
+            BlockingQueue<Write> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues.add(queue);
+            Thread t = new Thread(() -> drain(queue), "db-writer-" + i);
+            t.start();
+            threads.add(t);
+        }
+    }
+
+    private void drain(BlockingQueue<Write> queue) {
+        try {
+            for (Write w = queue.take(); w != END; w = queue.take()) {
+                if (failure.get() != null) continue;
+                try {
+                    w.run();
+                } catch (SQLException e) {
+                    failure.compareAndSet(null, e);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, new SQLException("writer failed", e));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public int lanes() {
+        return queues.size();
+    }
+
+    /** Queues write on the lane of partition, waiting while that lane's queue is full. */
+    public void submit(int partition, Write write) throws SQLException {
+        SQLException failed = failure.get();
+        if (failed != null) throw failed;
+        try {
+            queues.get(Math.floorMod(partition, queues.size())).put(write);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted while queueing a write", e);
+        }
+    }
+
+    /** Waits for every queued write; throws the first failure, if any. */
+    public void finish() throws SQLException {
+        close();
+        SQLException failed = failure.get();
+        if (failed != null) throw failed;
+    }
+
+    /** Stops the lanes after the writes already queued. */
+    @Override
+    public void close() {
+        boolean interrupted = false;
+        for (int i = 0; i < queues.size(); i++) {
+            Thread t = threads.get(i);
+            if (!t.isAlive()) continue;
+            boolean queued = false;
+            while (t.isAlive()) {
+                try {
+                    if (!queued) {
+                        queues.get(i).put(END);
+                        queued = true;
+                    }
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
@@ -0,0 +1,432 @@
+/**
+ * SentenceScanner.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Hand-written replacement for BreakIterator.getSentenceInstance() plus the
+ *  split / EDGE_PUNCT / toLowerCase token cleanup in Tokenizer. Both work on
+ *  index ranges of the original text, code point by code point, so a sentence
+ *  costs one walk for its break and one for its tokens, and a token costs one
+ *  substring (plus one lowercase copy if it has capitals).
+ *
+ *  The break rules are the JDK's sentence rules (sun.text.resources.BreakIteratorRules):
+ *
+ *    .*?{\u2029}                                         break after a paragraph separator
+ *    .*?<danda><space>*                                   break after a danda and its spaces
+ *    .*?<period>[<period><end>]*<space><space>* / <notlc>     ". Next"
+ *    .*?<period>[<period><end>]*<space>* / [<start-punctuation><sent-start>]+ <letter>   ". (Next"
+ *    .*?<term>[<term><period><end>]*<space>*{\u2029}      "! " / "? "
+ *
+ *  compiled into the same state machine BreakIterator runs, including its quirks
+ *  (a look-ahead that starts but never matches can still move the break back, and
+ *  at the end of the text a pending look-ahead counts as matched). Every BMP code
+ *  point is classified exactly as the JDK does; outside the BMP we follow the rule
+ *  definitions, where the JDK table has a few stale entries (some marks, unassigned
+ *  code points).
+ *
+ *  The same scans also run directly on UTF-8 bytes (Engine.UTF8): ASCII bytes are
+ *  classified by table, other sequences are decoded to a code point only where the
+ *  rules need one, and ASCII tokens go to the dictionary as bytes. Byte input must be
+ *  checked with validUtf8Prefix first; the byte scans assume well-formed UTF-8.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+final class SentenceScanner {
+
+    // character classes (columns of NEXT); IGNORE characters never change the state
+    private static final int IGNORE = -1;     // Mn, Me, Cf
+    private static final int COMMA = 0;
+    private static final int PARAGRAPH = 1;   // \u2029
+    private static final int PERIOD = 2;      // . \uFF0E
+    private static final int QUOTE = 3;       // " ' (both opening and closing)
+    private static final int TERM = 4;        // ! ? \u3002 \uFF01 \uFF1F
+    private static final int UPPER = 5;       // any letter that is not lowercase
+    private static final int LOWER = 6;
+    private static final int DANDA = 7;       // \u0964 \u0965
+    private static final int OTHER = 8;       // symbols, other punctuation, controls...
+    private static final int DIGIT = 9;       // Nd, Nl, No
+    private static final int CLOSE = 10;      // Pe, Pf
+    private static final int OPEN = 11;       // Ps, Pi
+    private static final int SPACE = 12;      // \t \n \f \r \u2028 Zs
+
+    // states (rows of NEXT)
+    private static final int STOP = 0;
+    private static final int TEXT = 1;              // inside a sentence
+    private static final int AFTER_PARAGRAPH = 2;
+    private static final int AFTER_DANDA = 3;       // danda + spaces
+    private static final int MATCHED = 4;           // ". Next": break at the saved look-ahead position
+    private static final int AFTER_PERIOD = 5;      // period + periods/closers
+    private static final int PERIOD_SPACE = 6;      // ... + one space
+    private static final int PERIOD_SPACES = 7;     // ... + two or more spaces
+    private static final int OPENERS = 8;           // ... + opening punctuation, waiting for a letter
+    private static final int PERIOD_QUOTE = 9;      // period + quote (closing it, or opening the next sentence)
+    private static final int SPACES_OPENERS = 10;   // openers after two spaces or a quote: a letter or nothing
+    private static final int AFTER_TERM = 11;       // ! or ? + terminators/periods/closers
+    private static final int TERM_SPACES = 12;      // ... + spaces
+
+    private static final byte[][] NEXT = {
+            //  ,  PS   .   "  !?   A   a  danda other 9   )   (  sp
+            {   0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0 },   // STOP
+            {   1,  2,  5,  1, 11,  1,  1,  3,  1,  1,  1,  1,  1 },   // TEXT
+            {   0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0 },   // AFTER_PARAGRAPH
+            {   0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  3 },   // AFTER_DANDA
+            {   0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0 },   // MATCHED
+            {   1,  2,  5,  9, 11,  1,  1,  8,  8,  1,  5,  8,  6 },   // AFTER_PERIOD
+            {   1,  2,  5,  8, 11,  4,  1,  8,  8,  1,  1,  8,  7 },   // PERIOD_SPACE
+            {   1,  2,  5, 10, 11,  4,  4, 10, 10,  1,  1, 10,  7 },   // PERIOD_SPACES
+            {   1,  2,  5,  8, 11,  4,  4,  8,  8,  1,  1,  8,  1 },   // OPENERS
+            {   1,  2,  5,  9, 11,  4,  4, 10, 10,  1,  5, 10,  6 },   // PERIOD_QUOTE
+            {   0,  0,  0,  8,  0,  4,  4,  8,  8,  0,  0,  8,  0 },   // SPACES_OPENERS
+            {   0,  2, 11, 11, 11,  0,  0,  0,  0,  0, 11,  0, 12 },   // AFTER_TERM
+            {   0,  2,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0, 12 },   // TERM_SPACES
+    };
+
+    // the break moves to the end of the character that led into these states...
+    private static final boolean[] ACCEPT = {
+            false, true, true, true, true, false, false, false, false, false, false, true, true };
+    // ...and these save a look-ahead position instead (or, for MATCHED, jump back to it)
+    private static final boolean[] LOOKAHEAD = {
+            false, false, false, false, true, true, true, true, false, true, false, false, false };
+
+    private static final byte[] ASCII_CLASS = new byte[128];
+    private static final boolean[] ASCII_KEPT = new boolean[128];
+    static {
+        for (int c = 0; c < 128; c++) {
+            ASCII_CLASS[c] = (byte) classify(c);
+            ASCII_KEPT[c] = isKept(c);
+        }
+    }
+
+    private SentenceScanner() {}
+
+    /**
+     * The next sentence break after from in text[0, end), the way BreakIterator.next() finds it
+     * when positioned at from; -1 if from == end.
+     */
+    static int nextBreak(CharSequence text, int from, int end) {
+        if (from >= end) return -1;
+
+        int result = from + charCount(text, from, end); // always advance at least one character
+        int lookahead = 0;
+        int state = TEXT;
+        int i = from;
+        while (i < end && state != STOP) {
+            int n;
+            int cls;
+            char ch = text.charAt(i);
+            if (ch < 128) {
+                n = i + 1;
+                cls = ASCII_CLASS[ch];
+            } else if (ch == '\uFFFF') {
+                break; // CharacterIterator.DONE: BreakIterator takes it for the end of the text
+            } else {
+                int cp = ch;
+                if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    cp = Character.toCodePoint(ch, text.charAt(i + 1));
+                }
+                n = i + Character.charCount(cp);
+                cls = classify(cp);
+            }
+
+            if (cls != IGNORE) state = NEXT[state][cls];
+            if (LOOKAHEAD[state]) {
+                if (ACCEPT[state]) result = lookahead;
+                else lookahead = n;
+            } else if (ACCEPT[state]) {
+                result = n;
+            }
+            i = n;
+        }
+
+        // ran off the end in a look-ahead: nothing following counts as a match
+        if (i >= end && lookahead == end) result = end;
+        return result;
+    }
+
+    /**
+     * Calls sink.token for every token of text[start, end): whitespace-separated words with
+     * leading/trailing characters other than letters, digits and apostrophes removed, lowercased.
+     * Same tokens as trim() + split("\\s+") + EDGE_PUNCT + toLowerCase(Locale.ROOT).
+     */
+    static void scanTokens(String text, int start, int end, TokenSink sink) {
+        int i = start;
+        while (i < end) {
+            while (i < end && isSplit(text.charAt(i))) i++;
+            int from = i;
+            while (i < end && !isSplit(text.charAt(i))) i++;
+            if (from == i) break;
+
+            // strip edges by code point, like the regex does
+            int s = from;
+            while (s < i) {
+                int cp = text.codePointAt(s);
+                if (isKept(cp)) break;
+                s += Character.charCount(cp);
+            }
+            if (s == i) continue;
+            int e = i;
+            while (true) {
+                int cp = Character.codePointBefore(text, e);
+                if (isKept(cp)) break;
+                e -= Character.charCount(cp);
+            }
+            // toLowerCase returns the same string when there is nothing to change
+            sink.token(text.substring(s, e).toLowerCase(Locale.ROOT));
+        }
+    }
+
+    // ---- UTF-8 bytes ----
+
+    /**
+     * Byte version of {@link #nextBreak(CharSequence, int, int)}: the next sentence break after
+     * from in text[0, end), a byte offset at a code point boundary; -1 if from == end.
+     */
+    static int nextBreak(byte[] text, int from, int end) {
+        if (from >= end) return -1;
+
+        int result = from + utf8Length(text[from]); // always advance at least one character
+        int lookahead = 0;
+        int state = TEXT;
+        int i = from;
+        while (i < end && state != STOP) {
+            int n;
+            int cls;
+            byte b = text[i];
+            if (b >= 0) {
+                n = i + 1;
+                cls = ASCII_CLASS[b];
+            } else {
+                int cp = decode(text, i);
+                if (cp == '\uFFFF') break; // CharacterIterator.DONE, as in the char version
+                n = i + utf8Length(b);
+                cls = classify(cp);
+            }
+
+            if (cls != IGNORE) state = NEXT[state][cls];
+            if (LOOKAHEAD[state]) {
+                if (ACCEPT[state]) result = lookahead;
+                else lookahead = n;
+            } else if (ACCEPT[state]) {
+                result = n;
+            }
+            i = n;
+        }
+
+        if (i >= end && lookahead == end) result = end;
+        return result;
+    }
+
+    /**
+     * Byte version of {@link #scanTokens(String, int, int, TokenSink)}, adding each token of
+     * text[start, end) to r. Pure ASCII tokens are looked up in the dictionary as bytes and only
+     * become a String when they are new; the others are decoded and lowercased as Strings.
+     */
+    static void scanTokens(byte[] text, int start, int end, Tokenizer.Result r) {
+        int i = start;
+        while (i < end) {
+            while (i < end && isSplit(text[i])) i++;
+            int from = i;
+            int high = 0; // any byte with the top bit set: not ASCII
+            while (i < end && !isSplit(text[i])) high |= text[i++];
+            if (from == i) break;
+
+            int s = from;
+            while (s < i) {
+                byte b = text[s];
+                if (b >= 0 ? ASCII_KEPT[b] : isKept(decode(text, s))) break;
+                s += utf8Length(b);
+            }
+            if (s == i) continue;
+            int e = i;
+            while (true) {
+                int p = e - 1;
+                if (text[p] >= 0) {
+                    if (ASCII_KEPT[text[p]]) break;
+                } else {
+                    while ((text[p] & 0xC0) == 0x80) p--; // back to the lead byte
+                    if (isKept(decode(text, p))) break;
+                }
+                e = p;
+            }
+
+            if (high < 0) {
+                // non-ASCII edges were stripped: the token itself may still be ASCII
+                high = 0;
+                for (int k = s; k < e; k++) high |= text[k];
+            }
+            if (high >= 0) {
+                r.tokenId(r.dictionary.addLowerAscii(text, s, e));
+            } else {
+                r.token(new String(text, s, e - s, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT));
+            }
+        }
+    }
+
+    /**
+     * Byte version of Tokenizer.settledPrefix: the offset just after the last two adjacent
+     * letters in text[0, end), or 0 if there are none.
+     */
+    static int settledPrefix(byte[] text, int end) {
+        boolean letterAfter = false;
+        int after = end;
+        for (int i = end; i > 0; ) {
+            int p = i - 1;
+            while (p > 0 && (text[p] & 0xC0) == 0x80) p--;
+            boolean letter = text[p] >= 0 ? isAsciiLetter(text[p]) : Character.isLetter(decode(text, p));
+            if (letter && letterAfter) return after;
+            letterAfter = letter;
+            after = i;
+            i = p;
+        }
+        return 0;
+    }
+
+    /**
+     * Byte version of Tokenizer.breakAfter: the first break after the first two adjacent letters
+     * at or after from, if it comes before limit; else -1.
+     */
+    static int breakAfter(byte[] text, int from, int limit, int end) {
+        int i = Math.max(from, 0);
+        while (i < limit && (text[i] & 0xC0) == 0x80) i++; // start on a code point
+        boolean letterBefore = false;
+        while (i < limit) {
+            byte b = text[i];
+            boolean letter = b >= 0 ? isAsciiLetter(b) : Character.isLetter(decode(text, i));
+            i += utf8Length(b);
+            if (letter && letterBefore) {
+                int brk = nextBreak(text, i, end);
+                return (brk >= 0 && brk < limit) ? brk : -1;
+            }
+            letterBefore = letter;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks that text[from, end) is well-formed UTF-8 (what a REPORT decoder accepts) and returns
+     * where its last complete sequence ends. A sequence cut off by end is only allowed (and left
+     * out of the result) when more input follows.
+     *
+     * @throws MalformedInputException at the first malformed sequence
+     */
+    static int validUtf8Prefix(byte[] text, int from, int end, boolean endOfInput) throws MalformedInputException {
+        int i = from;
+        while (i < end) {
+            // skip ASCII eight bytes at a time
+            while (i + 8 <= end && (readLong(text, i) & 0x8080808080808080L) == 0) i += 8;
+            if (i >= end) break;
+            int b = text[i] & 0xFF;
+            if (b < 0x80) {
+                i++;
+                continue;
+            }
+            int len = utf8Length((byte) b);
+            int lo = 0x80, hi = 0xBF; // allowed range of the second byte
+            if (b < 0xC2 || b > 0xF4) throw new MalformedInputException(1);
+            if (b == 0xE0) lo = 0xA0;        // overlong
+            else if (b == 0xED) hi = 0x9F;   // surrogates
+            else if (b == 0xF0) lo = 0x90;   // overlong
+            else if (b == 0xF4) hi = 0x8F;   // above U+10FFFF
+            for (int k = 1; k < len; k++) {
+                if (i + k >= end) {
+                    if (endOfInput) throw new MalformedInputException(k);
+                    return i;
+                }
+                int c = text[i + k] & 0xFF;
+                if (k == 1 ? (c < lo || c > hi) : (c & 0xC0) != 0x80) throw new MalformedInputException(k);
+            }
+            i += len;
+        }
+        return end;
+    }
+
+    private static long readLong(byte[] b, int i) {
+        return (b[i] & 0xFFL) | (b[i + 1] & 0xFFL) << 8 | (b[i + 2] & 0xFFL) << 16 | (b[i + 3] & 0xFFL) << 24
+                | (b[i + 4] & 0xFFL) << 32 | (b[i + 5] & 0xFFL) << 40 | (b[i + 6] & 0xFFL) << 48
+                | (b[i + 7] & 0xFFL) << 56;
+    }
+
+    /** Length of the sequence that starts with lead byte b (well-formed input). */
+    private static int utf8Length(byte b) {
+        if (b >= 0) return 1;
+        if ((b & 0xE0) == 0xC0) return 2;
+        if ((b & 0xF0) == 0xE0) return 3;
+        return 4;
+    }
+
+    /** Code point of the well-formed sequence at text[i]. */
+    private static int decode(byte[] text, int i) {
+        int b = text[i];
+        if (b >= 0) return b;
+        if ((b & 0xE0) == 0xC0) return (b & 0x1F) << 6 | (text[i + 1] & 0x3F);
+        if ((b & 0xF0) == 0xE0) return (b & 0x0F) << 12 | (text[i + 1] & 0x3F) << 6 | (text[i + 2] & 0x3F);
+        return (b & 0x07) << 18 | (text[i + 1] & 0x3F) << 12 | (text[i + 2] & 0x3F) << 6 | (text[i + 3] & 0x3F);
+    }
+
+    private static boolean isSplit(byte b) {
+        return b == ' ' || (b >= '\t' && b <= '\r');
+    }
+
+    private static boolean isAsciiLetter(byte b) {
+        return (b | 0x20) >= 'a' && (b | 0x20) <= 'z';
+    }
+
+    /** The characters \\s matches: [ \t\n\x0B\f\r]. */
+    private static boolean isSplit(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private static boolean isKept(int cp) {
+        return cp == '\'' || Character.isLetter(cp) || Character.isDigit(cp);
+    }
+
+    private static int charCount(CharSequence text, int i, int end) {
+        return Character.isHighSurrogate(text.charAt(i)) && i + 1 < end
+                && Character.isLowSurrogate(text.charAt(i + 1)) ? 2 : 1;
+    }
+
+    private static int classify(int cp) {
+        switch (cp) {
+            case ',': return COMMA;
+            case '\u2029': return PARAGRAPH;
+            case '.': case '\uFF0E': return PERIOD;
+            case '"': case '\'': return QUOTE;
+            case '!': case '?': case '\u3002': case '\uFF01': case '\uFF1F': return TERM;
+            case '\u0964': case '\u0965': return DANDA;
+            case '\t': case '\n': case '\f': case '\r': case '\u2028': return SPACE;
+            default: break;
+        }
+        switch (Character.getType(cp)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.FORMAT:
+                return IGNORE;
+            case Character.LOWERCASE_LETTER:
+                return LOWER;
+            case Character.UPPERCASE_LETTER:
+            case Character.TITLECASE_LETTER:
+            case Character.MODIFIER_LETTER:
+            case Character.OTHER_LETTER:
+                return UPPER;
+            case Character.SPACE_SEPARATOR:
+                return SPACE;
+            case Character.START_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+                return OPEN;
+            case Character.END_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+                return CLOSE;
+            case Character.DECIMAL_DIGIT_NUMBER:
+            case Character.LETTER_NUMBER:
+            case Character.OTHER_NUMBER:
+                return DIGIT;
+            default:
+                return OTHER;
+        }
+    }
+}
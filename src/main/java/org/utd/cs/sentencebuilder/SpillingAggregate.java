@@ -0,0 +1,302 @@
+/**
+ * SpillingAggregate.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Cross-file n-gram totals kept within a memory budget. Files are merged into an
+ *  ordinary Tokenizer.Result; once its counters use more than the budget, every
+ *  n-gram in it is written to a temporary "run" file, sorted by its word ids, and
+ *  the Result starts over empty. At the end the runs of each order are merged
+ *  k-way, adding up equal n-grams, and the totals are streamed to a RowSink, so
+ *  no more than one record per run is in memory while they are written out.
+ *
+ *  Runs refer to words by ids of this aggregate's own dictionary, which grows
+ *  across spills and stays small next to the n-grams; drain() translates them to
+ *  word_ids. Run records are (order word ids, count, end count) as DataOutputStream
+ *  ints. More than MAX_FAN_IN runs of one order are merged in rounds.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class SpillingAggregate implements AutoCloseable {
+
+    // runs open at once while merging
+    private static final int MAX_FAN_IN = 64;
+    private static final int BUFFER = 1 << 16;
+
+    /** Receives merged n-grams. */
+    public interface RowSink {
+        void row(int[] wordIds, int count, int endCount) throws IOException;
+    }
+
+    private final int maxOrder;
+    private final long budgetBytes;
+    private final Tokenizer.Options options;
+    private final Path dir;
+    private final WordDictionary words = new WordDictionary(); // ids used in the runs
+    private final List<List<Path>> runs = new ArrayList<>();   // [order] -> run files
+    private Tokenizer.Result current;
+    private int spills;
+    private int files;
+    private long spilledBytes;
+
+    /**
+     * @param maxOrder    highest n-gram order kept (2 .. Tokenizer.MAX_ORDER)
+     * @param budgetBytes memory the in-memory counters may use before they are spilled
+     */
+    public SpillingAggregate(int maxOrder, long budgetBytes) throws IOException {
+        if (budgetBytes < 1) throw new IllegalArgumentException("memory budget must be positive");
+        this.maxOrder = maxOrder;
+        this.budgetBytes = budgetBytes;
+        this.options = new Tokenizer.Options().setMaxOrder(maxOrder);
+        this.current = new Tokenizer.Result(options);
+        this.dir = Files.createTempDirectory("sentencebuilder-runs");
+        for (int k = 0; k <= maxOrder; k++) runs.add(new ArrayList<>());
+    }
+
+    /** Adds the n-grams of r, spilling them all to disk first if that goes over the budget. */
+    public synchronized void merge(Tokenizer.Result r) throws IOException {
+        current.merge(r);
+        if (memoryBytes() > budgetBytes) spill();
+    }
+
+    public int maxOrder() {
+        return maxOrder;
+    }
+
+    /** Bytes held by the in-memory counters. */
+    public synchronized long memoryBytes() {
+        long bytes = 0;
+        for (int k = 2; k <= maxOrder; k++) bytes += current.ngramCounts(k).memoryBytes();
+        return bytes;
+    }
+
+    /** Runs written so far (each holds every order). */
+    public synchronized int spills() {
+        return spills;
+    }
+
+    public synchronized long spilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * Spills what is still in memory. Call once, after the last merge.
+     *
+     * @return every word the runs refer to, by the ids drain() translates
+     */
+    public synchronized WordDictionary finish() throws IOException {
+        if (current.ngramCounts(2).size() > 0) spill();
+        current = null;
+        return words;
+    }
+
+    /**
+     * Merges the runs of one order and passes each distinct n-gram with its total counts to sink,
+     * with its words as wordIds[id of finish()'s dictionary]. N-grams with a word mapped to a
+     * negative id are dropped. The runs are deleted afterwards.
+     *
+     * @return rows passed to sink
+     */
+    public synchronized long drain(int order, int[] wordIds, RowSink sink) throws IOException {
+        List<Path> from = runs.get(order);
+        while (from.size() > MAX_FAN_IN) {
+            Path merged = newRunFile(order);
+            try (DataOutputStream out = openRun(merged)) {
+                mergeRuns(order, from.subList(0, MAX_FAN_IN),
+                        (ids, count, end) -> writeRecord(out, ids, order, count, end));
+            }
+            deleteAll(from.subList(0, MAX_FAN_IN));
+            from.subList(0, MAX_FAN_IN).clear();
+            from.add(merged);
+        }
+
+        int[] translated = new int[order];
+        long[] rows = new long[1];
+        mergeRuns(order, from, (ids, count, end) -> {
+            for (int j = 0; j < order; j++) {
+                translated[j] = wordIds[ids[j]];
+                if (translated[j] < 0) return;
+            }
+            sink.row(translated, count, end);
+            rows[0]++;
+        });
+        deleteAll(from);
+        from.clear();
+        return rows[0];
+    }
+
+    /** Deletes the run files and their folder. */
+    @Override
+    public synchronized void close() throws IOException {
+        for (List<Path> order : runs) deleteAll(order);
+        Files.deleteIfExists(dir);
+    }
+
+    // ---- spilling ----
+
+    private void spill() throws IOException {
+        int[] wordMap = new int[current.dictionary.size()];
+        for (int id = 0; id < wordMap.length; id++) wordMap[id] = words.add(current.dictionary.word(id));
+
+        int[] ids = new int[maxOrder];
+        for (int k = 2; k <= maxOrder; k++) {
+            NgramCounter counts = current.ngramCounts(k);
+            if (counts.size() == 0) continue;
+            Path run = newRunFile(k);
+            try (DataOutputStream out = openRun(run)) {
+                for (int slot : sortedSlots(k, wordMap)) {
+                    for (int j = 0; j < k; j++) ids[j] = wordAt(k, slot, j, wordMap);
+                    writeRecord(out, ids, k, counts.count(slot), counts.endCount(slot));
+                }
+            }
+            runs.get(k).add(run);
+            spilledBytes += Files.size(run);
+        }
+        spills++;
+        current = new Tokenizer.Result(options);
+    }
+
+    /** Word j (0-based) of the order-k n-gram in slot, found by walking its prefix slots. */
+    private int wordAt(int k, int slot, int j, int[] wordMap) {
+        long key = current.ngramCounts(k).key(slot);
+        for (int m = k; ; m--) {
+            if (j == m - 1) return wordMap[NgramCounter.low(key)];
+            if (m == 2) return wordMap[NgramCounter.high(key)];
+            key = current.ngramCounts(m - 1).key(NgramCounter.high(key));
+        }
+    }
+
+    /**
+     * Slots of order k in order of their word ids: an LSD radix sort, 16 bits at a time, from the
+     * last word to the first (ids are never negative, so unsigned digits order them correctly).
+     */
+    private int[] sortedSlots(int k, int[] wordMap) {
+        int n = current.ngramCounts(k).size();
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) perm[i] = i;
+        int[] tmp = new int[n];
+        int[] column = new int[n];
+        int[] starts = new int[(1 << 16) + 1];
+
+        for (int j = k - 1; j >= 0; j--) {
+            int max = 0;
+            for (int slot = 0; slot < n; slot++) {
+                column[slot] = wordAt(k, slot, j, wordMap);
+                max = Math.max(max, column[slot]);
+            }
+            for (int shift = 0; shift < 32 && (max >>> shift) != 0; shift += 16) {
+                Arrays.fill(starts, 0);
+                for (int slot : perm) starts[((column[slot] >>> shift) & 0xFFFF) + 1]++;
+                for (int d = 0; d < 1 << 16; d++) starts[d + 1] += starts[d];
+                for (int slot : perm) tmp[starts[(column[slot] >>> shift) & 0xFFFF]++] = slot;
+                int[] t = perm;
+                perm = tmp;
+                tmp = t;
+            }
+        }
+        return perm;
+    }
+
+    // ---- merging ----
+
+    /** Reads run files of one order in parallel, in id order, adding up equal n-grams. */
+    private static void mergeRuns(int order, List<Path> files, RowSink sink) throws IOException {
+        PriorityQueue<Run> queue = new PriorityQueue<>(Math.max(1, files.size()),
+                Comparator.comparing((Run r) -> r.ids, Arrays::compare));
+        try {
+            for (Path file : files) {
+                Run run = new Run(file, order);
+                if (run.next()) queue.add(run);
+                else run.close();
+            }
+
+            int[] key = new int[order];
+            while (!queue.isEmpty()) {
+                Run top = queue.poll();
+                System.arraycopy(top.ids, 0, key, 0, order);
+                int count = top.count;
+                int end = top.end;
+                advance(queue, top);
+                while (!queue.isEmpty() && Arrays.equals(queue.peek().ids, key)) {
+                    Run same = queue.poll();
+                    count += same.count;
+                    end += same.end;
+                    advance(queue, same);
+                }
+                sink.row(key, count, end);
+            }
+        } finally {
+            for (Run run : queue) run.close();
+        }
+    }
+
+    private static void advance(PriorityQueue<Run> queue, Run run) throws IOException {
+        if (run.next()) queue.add(run);
+        else run.close();
+    }
+
+    /** Cursor over one run file. */
+    private static final class Run implements Closeable {
+        private final DataInputStream in;
+        final int[] ids;
+        int count;
+        int end;
+
+        Run(Path file, int order) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER));
+            ids = new int[order];
+        }
+
+        /** Reads the next record; false at the end of the file. */
+        boolean next() throws IOException {
+            try {
+                ids[0] = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            for (int j = 1; j < ids.length; j++) ids[j] = in.readInt();
+            count = in.readInt();
+            end = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private Path newRunFile(int order) {
+        return dir.resolve("run-" + (files++) + "-" + order + ".bin");
+    }
+
+    private static DataOutputStream openRun(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER));
+    }
+
+    private static void writeRecord(DataOutputStream out, int[] ids, int order, int count, int end) throws IOException {
+        for (int j = 0; j < order; j++) out.writeInt(ids[j]);
+        out.writeInt(count);
+        out.writeInt(end);
+    }
+
+    private static void deleteAll(List<Path> files) throws IOException {
+        for (Path file : files) Files.deleteIfExists(file);
+    }
+}
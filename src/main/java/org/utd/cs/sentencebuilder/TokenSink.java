@@ -0,0 +1,48 @@
+/**
+ * TokenSink.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Receiver for the push-style Tokenizer API (Tokenizer.process(Reader, TokenSink),
+ *  Tokenizer.process(ReadableByteChannel, TokenSink)). Events come in text order,
+ *  one sentence at a time:
+ *
+ *    sentenceStart()
+ *    token(t1) token(t2) ... token(tn)
+ *    bigram(t1, t2, ...) trigram(t1, t2, t3, ...) bigram(t2, t3, ...) ...
+ *    sentenceEnd(n)
+ *
+ *  Sentences without any tokens produce no events. The n-grams of a sentence are
+ *  only known to be last (endsSentence) once the sentence is over, so they follow
+ *  its tokens. With Options.setMaxOrder(4 or 5), each position's trigram is followed
+ *  by its longer n-grams: ngram([t1, t2, t3, t4], ...), and so on.
+ *  Tokenizer.Result is the sink that builds the usual aggregates.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.util.List;
+
+public interface TokenSink {
+
+    /** A sentence with at least one token begins. */
+    default void sentenceStart() {}
+
+    /** The next token (cleaned and lowercased) of the current sentence. */
+    void token(String token);
+
+    /** A bigram of the current sentence; endsSentence is true for its last one. */
+    default void bigram(String w1, String w2, boolean endsSentence) {}
+
+    /** A trigram of the current sentence; endsSentence is true for its last one. */
+    default void trigram(String w1, String w2, String w3, boolean endsSentence) {}
+
+    /**
+     * An n-gram of order 4 or more of the current sentence (only with Options.setMaxOrder > 3).
+     * words is a view that is only valid during the call; endsSentence is true for the last one.
+     */
+    default void ngram(List<String> words, boolean endsSentence) {}
+
+    /** The current sentence is over; length is its number of tokens. */
+    default void sentenceEnd(int length) {}
+}
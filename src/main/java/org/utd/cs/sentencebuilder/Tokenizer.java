@@ -7,19 +7,44 @@
  *
  * Description:
  *  Tokenizes text files, producing:
- *   - Map<String, Word>  (Word object holds total/start/end counts)
- *   - Map<String, Map<String, Integer>> bigramCounts (prev -> next -> count)
+ *   - WordDictionary (local word id -> word + total/start/end counts)
+ *   - NgramCounter bigrams / trigrams (packed local ids -> count, end count)
+ *   - optionally 4-grams and 5-grams (Options.setMaxOrder), chained the same way
  *
- *  We purposely keep bigram counts keyed by strings here because WordPair
- *  needs word IDs, which we won’t have until after words are inserted in DB.
+ *  N-grams are keyed by local dictionary ids rather than strings; WordPair
+ *  needs database word IDs, which we won’t have until after words are
+ *  inserted in DB, so the importer maps local ids to word_ids afterwards.
+ *
+ *  Sentences and tokens are found by SentenceScanner by default; the original
+ *  BreakIterator + regex pipeline is still available as Engine.LEGACY, and
+ *  Engine.UTF8 runs the scanner on the file's bytes without decoding them.
+ *
+ *  process(Reader, TokenSink) / process(ReadableByteChannel, TokenSink) push
+ *  sentences and tokens to any TokenSink as they are found; Result is the sink
+ *  behind process(String) and processFile.
  */
 
 package org.utd.cs.sentencebuilder;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.io.IOException;
+import java.io.Reader;
 import java.text.BreakIterator;
+import java.text.StringCharacterIterator;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 import java.util.regex.Pattern;
 
 public class Tokenizer {
@@ -29,94 +54,765 @@ public class Tokenizer {
 
     private static final Pattern SENTENCE_SPLIT = Pattern.compile("(?<=[.!?])\\s+");
 
-    public static class Result {
-        /** Word string -> Word object (with total/start/end counts). */
-        public final Map<String, Word> words = new HashMap<>();
-        /** Counts: n-gram -> count. */
-        Map<String, Integer> bigramCounts = new HashMap<>();    // "w1 w2" -> count
-        Map<String, Integer> trigramCounts = new HashMap<>();   // "w1 w2 w3" -> count
+    public static class Result implements TokenSink {
+        /** Local word id -> word string and total/start/end counts. */
+        public final WordDictionary dictionary = new WordDictionary();
+        /** Counts: n-gram -> count and end-of-sentence count. */
+        final NgramCounter bigrams = new NgramCounter();    // pack(w1, w2)
+        final NgramCounter trigrams = new NgramCounter();   // pack(bigram slot of (w1, w2), w3)
+        /**
+         * Counters by order, 2 .. maxOrder: ngrams[2] is bigrams, ngrams[3] is trigrams, and an
+         * order-k key is pack(slot of its first k-1 words in ngrams[k - 1], wk).
+         */
+        private final NgramCounter[] ngrams;
+        private final int maxOrder;
+        /** Replaces trigrams in approximate mode (see Options.setApproximateTrigrams); else null. */
+        final HeavyHitters topTrigrams;
 
         /** Histogram: sentence length (#tokens) -> count. */
         public final Map<Integer, Integer> sentenceLengthCounts = new HashMap<>();
 
-        /** Bigram/trigram end-of-sentence counts. */
-        public final Map<String, Integer> bigramEndCounts = new HashMap<>();
-        public final Map<String, Integer> trigramEndCounts = new HashMap<>();
+        /** Flat list of tokens (mostly for debugging/printing); empty unless retainTokens was set. */
+        public final List<String> tokens;
+        private final boolean retainTokens;
+        private long tokenCount;
+
+        private int[] ids = new int[64]; // scratch: local ids of the current sentence
+        private int sentenceLength;
+
+        /** Counts only; tokens are not kept. */
+        public Result() {
+            this(false);
+        }
+
+        public Result(boolean retainTokens) {
+            this(new Options().setRetainTokens(retainTokens));
+        }
+
+        /** Uses the token retention and trigram settings of options. */
+        public Result(Options options) {
+            this.retainTokens = options.isRetainTokens();
+            this.tokens = retainTokens ? new ArrayList<>() : List.of();
+            this.topTrigrams = options.getMaxTrigrams() > 0
+                    ? new HeavyHitters(options.getMaxTrigrams(), options.getTrigramEpsilon(), options.getTrigramDelta())
+                    : null;
+            this.maxOrder = options.getMaxOrder();
+            if (topTrigrams != null && maxOrder > 3) {
+                // 4-grams are keyed by trigram slots, which approximate mode does not keep
+                throw new IllegalArgumentException("approximate trigrams cannot be combined with n-gram order > 3");
+            }
+            this.ngrams = new NgramCounter[maxOrder + 1];
+            ngrams[2] = bigrams;
+            if (maxOrder >= 3) ngrams[3] = trigrams;
+            for (int k = 4; k <= maxOrder; k++) ngrams[k] = new NgramCounter();
+        }
+
+        /** Highest n-gram order counted (2 .. 5). */
+        public int maxOrder() {
+            return maxOrder;
+        }
+
+        /** Exact counts of order n (2 .. maxOrder()); see {@link #ngrams}. */
+        NgramCounter ngramCounts(int n) {
+            return ngrams[n];
+        }
+
+        /** Number of tokens seen, whether or not they were retained. */
+        public long tokenCount() {
+            return tokenCount;
+        }
+
+        /** For aggregates that count tokens elsewhere (see ConcurrentAggregate.drainInto). */
+        void addTokenCount(long n) {
+            tokenCount += n;
+        }
+
+        /**
+         * Trigram counts keyed by pack(bigram slot, w3): all of them, or in approximate mode
+         * only the tracked heavy hitters (with counts that may be slightly too high).
+         */
+        NgramCounter trigramCounts() {
+            return (topTrigrams != null) ? topTrigrams.toCounter() : trigrams;
+        }
+
+        /** Word string -> Word object (with total/start/end counts), built from the dictionary. */
+        public Map<String, Word> words() {
+            Map<String, Word> out = new HashMap<>();
+            for (Word w : dictionary.toWords()) {
+                out.put(w.getWordValue(), w);
+            }
+            return out;
+        }
+
+        /** Appends a token to the current sentence. */
+        @Override
+        public void token(String tok) {
+            tokenId(dictionary.add(tok));
+        }
+
+        /** Appends the token with local id to the current sentence. */
+        void tokenId(int id) {
+            tokenCount++;
+            if (retainTokens) tokens.add(dictionary.word(id));
+            if (sentenceLength == ids.length) ids = Arrays.copyOf(ids, ids.length * 2);
+            ids[sentenceLength++] = id;
+        }
+
+        /** Ends the sentence; length is the number of tokens since sentenceStart, which Result counts itself. */
+        @Override
+        public void sentenceEnd(int length) {
+            endSentence();
+        }
+
+        /**
+         * Adds the current sentence's tokens to the word, n-gram and sentence-length aggregates. The
+         * n-grams are counted here from the local ids, so the bigram/trigram events are not needed.
+         */
+        void endSentence() {
+            int len = sentenceLength;
+            sentenceLength = 0;
+            if (len == 0) return;
+
+            sentenceLengthCounts.merge(len, 1, Integer::sum);
+
+            for (int i = 0; i < len; i++) {
+                dictionary.addCounts(ids[i], 1, i == 0 ? 1 : 0, i == len - 1 ? 1 : 0);
+            }
+
+            for (int i = 0; i + 1 < len; i++) {
+                // end-of-sentence flags: the n-gram of each order that finishes the sentence
+                int prefix = bigrams.add(NgramCounter.pack(ids[i], ids[i + 1]), 1, i + 2 == len ? 1 : 0);
+                for (int k = 3; k <= maxOrder && i + k <= len; k++) {
+                    long key = NgramCounter.pack(prefix, ids[i + k - 1]);
+                    int end = i + k == len ? 1 : 0;
+                    if (k == 3 && topTrigrams != null) {
+                        addTrigram(key, 1, end);
+                        break;
+                    }
+                    prefix = ngrams[k].add(key, 1, end);
+                }
+            }
+        }
+
+        private void addTrigram(long key, int count, int endCount) {
+            if (topTrigrams == null) {
+                trigrams.add(key, count, endCount);
+                return;
+            }
+            // the sketch hashes the words, not the local ids, so merged results agree
+            long prefix = bigrams.key(NgramCounter.high(key));
+            long hash = HeavyHitters.hashWords(dictionary.word(NgramCounter.high(prefix)),
+                    dictionary.word(NgramCounter.low(prefix)), dictionary.word(NgramCounter.low(key)));
+            topTrigrams.add(key, hash, count, endCount);
+        }
+
+        /**
+         * Adds all counts of other into this result, re-encoding its local ids.
+         * The token list is not copied (the token count is).
+         */
+        public void merge(Result other) {
+            tokenCount += other.tokenCount;
+
+            int[] wordMap = new int[other.dictionary.size()];
+            for (int id = 0; id < wordMap.length; id++) {
+                int into = dictionary.add(other.dictionary.word(id));
+                dictionary.addCounts(into,
+                        other.dictionary.totalOccurrences(id),
+                        other.dictionary.startSentenceCount(id),
+                        other.dictionary.endSequenceCount(id));
+                wordMap[id] = into;
+            }
+
+            int[] bigramMap = new int[other.bigrams.size()];
+            for (int slot = 0; slot < bigramMap.length; slot++) {
+                long key = other.bigrams.key(slot);
+                bigramMap[slot] = bigrams.add(
+                        NgramCounter.pack(wordMap[NgramCounter.high(key)], wordMap[NgramCounter.low(key)]),
+                        other.bigrams.count(slot), other.bigrams.endCount(slot));
+            }
+
+            if (topTrigrams != null) {
+                for (int slot = 0; slot < other.trigrams.size(); slot++) {
+                    long key = other.trigrams.key(slot);
+                    addTrigram(NgramCounter.pack(bigramMap[NgramCounter.high(key)], wordMap[NgramCounter.low(key)]),
+                            other.trigrams.count(slot), other.trigrams.endCount(slot));
+                }
+            } else {
+                // each order re-encodes its prefix slots through the map of the order below
+                int[] prefixMap = bigramMap;
+                for (int k = 3; k <= Math.min(maxOrder, other.maxOrder); k++) {
+                    NgramCounter from = other.ngrams[k];
+                    int[] slotMap = new int[from.size()];
+                    for (int slot = 0; slot < slotMap.length; slot++) {
+                        long key = from.key(slot);
+                        slotMap[slot] = ngrams[k].add(
+                                NgramCounter.pack(prefixMap[NgramCounter.high(key)], wordMap[NgramCounter.low(key)]),
+                                from.count(slot), from.endCount(slot));
+                    }
+                    prefixMap = slotMap;
+                }
+            }
+            if (other.topTrigrams != null) {
+                // only the other side's tracked trigrams carry over, not its sketch
+                for (int slot = 0; slot < other.topTrigrams.size(); slot++) {
+                    long key = other.topTrigrams.key(slot);
+                    addTrigram(NgramCounter.pack(bigramMap[NgramCounter.high(key)], wordMap[NgramCounter.low(key)]),
+                            other.topTrigrams.count(slot), other.topTrigrams.endCount(slot));
+                }
+            }
+
+            other.sentenceLengthCounts.forEach((len, n) -> sentenceLengthCounts.merge(len, n, Integer::sum));
+        }
+    }
+
+    /** How sentences and tokens are found. Both engines give the same result. */
+    public enum Engine {
+        /** {@link SentenceScanner}: a hand-written scanner over the text, no regex or per-sentence copies. */
+        SCANNER,
+        /** The original BreakIterator + split/regex pipeline, kept for comparison. */
+        LEGACY,
+        /**
+         * The SCANNER rules run directly on UTF-8 bytes: no decoding, ASCII tokens looked up as bytes.
+         * Used by processFile, processFileParallel and process(ByteBuffer); input that is already
+         * text (String, Reader) is scanned as with SCANNER.
+         */
+        UTF8
+    }
+
+    /** Tokenizer settings; the methods without an Options argument use the defaults. */
+    public static class Options {
+        private Engine engine = Engine.SCANNER;
+        private boolean retainTokens = false;
+        private int maxTrigrams = 0;
+        private double trigramEpsilon = 1e-5;
+        private double trigramDelta = 0.01;
+        private int maxOrder = 3;
+
+        public Engine getEngine() {
+            return engine;
+        }
+
+        public Options setEngine(Engine engine) {
+            this.engine = engine;
+            return this;
+        }
+
+        public boolean isRetainTokens() {
+            return retainTokens;
+        }
+
+        /** Keep every token in Result.tokens (off by default; Result.tokenCount() is always kept). */
+        public Options setRetainTokens(boolean retainTokens) {
+            this.retainTokens = retainTokens;
+            return this;
+        }
+
+        /** Upper bound on tracked trigrams in approximate mode; 0 (the default) counts all exactly. */
+        public int getMaxTrigrams() {
+            return maxTrigrams;
+        }
+
+        public double getTrigramEpsilon() {
+            return trigramEpsilon;
+        }
+
+        public double getTrigramDelta() {
+            return trigramDelta;
+        }
+
+        /**
+         * Approximate trigram counting for a Result built with these options: only the (about)
+         * maxTrigrams most frequent trigrams are kept, via a Count-Min sketch whose estimates
+         * overcount by at most epsilon * (total trigrams) with probability 1 - delta.
+         * See {@link HeavyHitters}. Words and bigrams stay exact.
+         */
+        public Options setApproximateTrigrams(int maxTrigrams, double epsilon, double delta) {
+            this.maxTrigrams = maxTrigrams;
+            this.trigramEpsilon = epsilon;
+            this.trigramDelta = delta;
+            return this;
+        }
+
+        public int getMaxOrder() {
+            return maxOrder;
+        }
 
-        /** Flat list of tokens (mostly for debugging/printing). */
-        public final List<String> tokens = new ArrayList<>();
+        /**
+         * Longest n-grams counted by a Result and emitted to a TokenSink: 2 (bigrams only),
+         * 3 (the default, up to trigrams), 4 or 5. Orders above 3 need exact trigrams.
+         */
+        public Options setMaxOrder(int maxOrder) {
+            if (maxOrder < 2 || maxOrder > MAX_ORDER) {
+                throw new IllegalArgumentException("n-gram order must be between 2 and " + MAX_ORDER);
+            }
+            this.maxOrder = maxOrder;
+            return this;
+        }
     }
 
+    /** Highest n-gram order supported by {@link Options#setMaxOrder}. */
+    public static final int MAX_ORDER = 5;
+
+    private static final Options DEFAULTS = new Options();
+
+    /** Chars read per step by {@link #process(Reader, TokenSink)}. */
+    static final int BUFFER_CHARS = 1 << 20;
+
+    /** Bytes mapped and decoded per step by {@link #processFile(Path)}. */
+    static final int CHUNK_BYTES = 8 << 20;
+
+    /** Minimum piece size (chars) for parallel tokenization. */
+    static final int SEGMENT_CHARS = 1 << 19;
+
     public static Result processFile(String path) throws IOException {
-        String text = Files.readString(Path.of(path));
-        return process(text);
+        return processFile(Path.of(path));
+    }
+
+    /**
+     * Streams a file through the tokenizer instead of reading it into one String.
+     * The file is memory-mapped CHUNK_BYTES at a time and decoded as UTF-8; the
+     * unfinished sentence at the end of each chunk is carried into the next one,
+     * so peak memory is one chunk plus the aggregates, not the file size.
+     * (A single sentence longer than a chunk is still buffered whole.)
+     */
+    public static Result processFile(Path path) throws IOException {
+        return processFile(path, DEFAULTS);
+    }
+
+    public static Result processFile(Path path, Options options) throws IOException {
+        return processFile(path, CHUNK_BYTES, null, SEGMENT_CHARS, options);
+    }
+
+    /**
+     * Same as {@link #processFile(Path)}, but each chunk is split at sentence breaks and the
+     * pieces are tokenized in parallel on the common ForkJoinPool. Counts are identical.
+     */
+    public static Result processFileParallel(Path path) throws IOException {
+        return processFileParallel(path, DEFAULTS);
+    }
+
+    public static Result processFileParallel(Path path, Options options) throws IOException {
+        return processFile(path, CHUNK_BYTES, ForkJoinPool.commonPool(), SEGMENT_CHARS, options);
+    }
+
+    static Result processFile(Path path, int chunkBytes) throws IOException {
+        return processFile(path, chunkBytes, null, SEGMENT_CHARS, DEFAULTS);
+    }
+
+    static Result processFile(Path path, int chunkBytes, ForkJoinPool pool, int segmentChars, Options options)
+            throws IOException {
+        chunkBytes = Math.max(chunkBytes, 16); // must hold at least one full UTF-8 sequence
+        if (options.getEngine() == Engine.UTF8) {
+            return processFileUtf8(path, chunkBytes, pool, segmentChars, options);
+        }
+        Result r = new Result(options);
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        CharBuffer chars = CharBuffer.allocate(chunkBytes); // UTF-8 never decodes to more chars than bytes
+        StringBuilder pending = new StringBuilder();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long pos = 0;
+            while (pos < size) {
+                long len = Math.min(chunkBytes, size - pos);
+                boolean last = pos + len >= size;
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+
+                CoderResult cr = decoder.decode(bytes, chars, last);
+                if (cr.isError()) cr.throwException();
+                if (last) decoder.flush(chars); // only after the final decode; an empty file has none
+                // a multi-byte character cut by the chunk edge is left unread and re-mapped next time
+                pos += bytes.position();
+
+                chars.flip();
+                pending.append(chars);
+                chars.clear();
+
+                if (!last) {
+                    String text = pending.toString();
+                    int consumed = processChunk(r, text, settledPrefix(text), pool, segmentChars, options);
+                    pending.delete(0, consumed);
+                }
+            }
+        }
+
+        String text = pending.toString();
+        processChunk(r, text, text.length() + 1, pool, segmentChars, options);
+        return r;
+    }
+
+    /**
+     * Engine.UTF8 version of {@link #processFile(Path, int, ForkJoinPool, int, Options)}: the mapped
+     * bytes are copied into one buffer, checked, and scanned as they are. The unsettled tail (and
+     * a sequence cut by the chunk edge) is moved to the front of the buffer for the next chunk.
+     */
+    private static Result processFileUtf8(Path path, int chunkBytes, ForkJoinPool pool, int segmentBytes,
+                                          Options options) throws IOException {
+        Result r = new Result(options);
+        byte[] text = new byte[chunkBytes];
+        int length = 0;  // bytes in text
+        int checked = 0; // text[0, checked) is known to be complete, well-formed UTF-8
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long pos = 0;
+            while (pos < size) {
+                int len = (int) Math.min(chunkBytes, size - pos);
+                boolean last = pos + len >= size;
+                if (length + len > text.length) text = Arrays.copyOf(text, Math.max(length + len, 2 * text.length));
+                channel.map(FileChannel.MapMode.READ_ONLY, pos, len).get(text, length, len);
+                length += len;
+                pos += len;
+
+                checked = SentenceScanner.validUtf8Prefix(text, checked, length, last);
+                if (!last) {
+                    int consumed = processChunkUtf8(r, text, checked, SentenceScanner.settledPrefix(text, checked),
+                            pool, segmentBytes, options);
+                    System.arraycopy(text, consumed, text, 0, length - consumed);
+                    length -= consumed;
+                    checked -= consumed;
+                }
+            }
+        }
+
+        processChunkUtf8(r, text, length, length + 1, pool, segmentBytes, options);
+        return r;
     }
 
     public static Result process(String text) {
-        Result r = new Result();
+        return process(text, DEFAULTS);
+    }
+
+    /**
+     * Tokenizes UTF-8 bytes (from the buffer's position to its limit; the position is not moved).
+     * With Engine.UTF8 the bytes are scanned directly, otherwise they are decoded and passed to
+     * {@link #process(String, Options)}.
+     *
+     * @throws CharacterCodingException if the bytes are not well-formed UTF-8
+     */
+    public static Result process(ByteBuffer utf8, Options options) throws CharacterCodingException {
+        if (options.getEngine() != Engine.UTF8) {
+            return process(StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(utf8.duplicate()).toString(), options);
+        }
+        byte[] text = new byte[utf8.remaining()];
+        utf8.duplicate().get(text);
+        SentenceScanner.validUtf8Prefix(text, 0, text.length, true);
+
+        Result r = new Result(options);
+        processSentencesUtf8(r, text, 0, text.length, text.length + 1);
+        return r;
+    }
+
+    public static Result process(String text, Options options) {
+        Result r = new Result(options);
+        processSentences(new Emitter(r, options.getMaxOrder()), text, 0, text.length() + 1, options.getEngine());
+        return r;
+    }
+
+    /** Pushes the sentences and tokens read from in to sink, one buffer at a time. */
+    public static void process(Reader in, TokenSink sink) throws IOException {
+        process(in, sink, DEFAULTS);
+    }
+
+    /**
+     * Reads in to the end and pushes its sentences and tokens to sink as soon as they are
+     * settled (see {@link #settledPrefix}). Memory is bounded by the read buffer plus the
+     * longest sentence. The reader is not closed.
+     */
+    public static void process(Reader in, TokenSink sink, Options options) throws IOException {
+        Emitter events = new Emitter(sink, options.getMaxOrder());
+        Engine engine = options.getEngine();
+        char[] buf = new char[BUFFER_CHARS];
+        StringBuilder pending = new StringBuilder();
+        int flushAt = BUFFER_CHARS;
+
+        for (int n; (n = in.read(buf)) >= 0; ) {
+            pending.append(buf, 0, n);
+            if (pending.length() >= flushAt) {
+                String text = pending.toString();
+                pending.delete(0, processSentences(events, text, 0, settledPrefix(text), engine));
+                // a sentence longer than the buffer: wait for twice as much before trying again
+                flushAt = Math.max(BUFFER_CHARS, 2 * pending.length());
+            }
+        }
+
+        String text = pending.toString();
+        processSentences(events, text, 0, text.length() + 1, engine);
+    }
+
+    /** Same as {@link #process(Reader, TokenSink)} for UTF-8 bytes (malformed input is an error). */
+    public static void process(ReadableByteChannel in, TokenSink sink) throws IOException {
+        process(in, sink, DEFAULTS);
+    }
+
+    public static void process(ReadableByteChannel in, TokenSink sink, Options options) throws IOException {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        // not closed: that would close the caller's channel
+        process(Channels.newReader(in, decoder, BUFFER_CHARS), sink, options);
+    }
+
+    /** Same as {@link #process(String)}, tokenizing sentence-aligned pieces on the common ForkJoinPool. */
+    public static Result processParallel(String text) {
+        return processParallel(text, ForkJoinPool.commonPool());
+    }
+
+    public static Result processParallel(String text, ForkJoinPool pool) {
+        return processParallel(text, pool, DEFAULTS);
+    }
+
+    public static Result processParallel(String text, ForkJoinPool pool, Options options) {
+        return processParallel(text, pool, SEGMENT_CHARS, options);
+    }
+
+    static Result processParallel(String text, ForkJoinPool pool, int segmentChars, Options options) {
+        Result r = new Result(options);
+        processChunk(r, text, text.length() + 1, pool, segmentChars, options);
+        return r;
+    }
+
+    /**
+     * Tokenizes the sentences of text that end before limit into r and returns where the first
+     * unprocessed sentence starts. With a pool, text is first cut at sentence breaks into pieces
+     * of at least segmentChars, which are tokenized in parallel and merged back in order.
+     */
+    private static int processChunk(Result r, String text, int limit, ForkJoinPool pool, int segmentChars,
+                                    Options options) {
+        if (pool == null || text.length() < 2 * segmentChars) {
+            return processSentences(new Emitter(r, options.getMaxOrder()), text, 0, limit, options.getEngine());
+        }
+
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        for (int target = segmentChars; target < text.length() - segmentChars; ) {
+            int cut = breakAfter(text, target, Math.min(limit, text.length()), options.getEngine());
+            if (cut < 0) break;
+            cuts.add(cut);
+            target = cut + segmentChars;
+        }
 
+        int maxOrder = options.getMaxOrder();
+        Engine engine = options.getEngine();
+        SegmentTask.Piece whole = pool.invoke(new SegmentTask(
+                (piece, from, end) -> processSentences(new Emitter(piece, maxOrder), text, from, end, engine),
+                cuts, 0, cuts.size(), limit, options));
+        r.merge(whole.result);
+        if (options.isRetainTokens()) r.tokens.addAll(whole.result.tokens);
+        return whole.consumed;
+    }
+
+    /** Byte version of {@link #processChunk} for Engine.UTF8; text[0, length) is the chunk. */
+    private static int processChunkUtf8(Result r, byte[] text, int length, int limit, ForkJoinPool pool,
+                                        int segmentBytes, Options options) {
+        if (pool == null || length < 2 * segmentBytes) {
+            return processSentencesUtf8(r, text, 0, length, limit);
+        }
+
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        for (int target = segmentBytes; target < length - segmentBytes; ) {
+            int cut = SentenceScanner.breakAfter(text, target, Math.min(limit, length), length);
+            if (cut < 0) break;
+            cuts.add(cut);
+            target = cut + segmentBytes;
+        }
+
+        SegmentTask.Piece whole = pool.invoke(new SegmentTask(
+                (piece, from, end) -> processSentencesUtf8(piece, text, from, length, end),
+                cuts, 0, cuts.size(), limit, options));
+        r.merge(whole.result);
+        if (options.isRetainTokens()) r.tokens.addAll(whole.result.tokens);
+        return whole.consumed;
+    }
+
+    /** Tokenizes one piece of a chunk into piece, from a sentence break up to limit (see processSentences). */
+    private interface PieceTokenizer {
+        int tokenize(Result piece, int from, int limit);
+    }
+
+    /**
+     * Tokenizes pieces [cuts[lo], cuts[hi]) of the text, halving the range until one piece is left
+     * and merging the two halves' results left to right so the token order is kept.
+     */
+    private static class SegmentTask extends RecursiveTask<SegmentTask.Piece> {
+        record Piece(Result result, int consumed) {}
+
+        private final PieceTokenizer pieces;
+        private final List<Integer> cuts;
+        private final int lo, hi, limit;
+        private final Options options;
+
+        SegmentTask(PieceTokenizer pieces, List<Integer> cuts, int lo, int hi, int limit, Options options) {
+            this.pieces = pieces;
+            this.cuts = cuts;
+            this.lo = lo;
+            this.hi = hi;
+            this.limit = limit;
+            this.options = options;
+        }
+
+        @Override
+        protected Piece compute() {
+            if (hi - lo == 1) {
+                // exact counts per piece; an approximate caller folds them in when merging
+                Result r = new Result(new Options()
+                        .setRetainTokens(options.isRetainTokens())
+                        .setMaxOrder(options.getMaxOrder()));
+                // inner pieces end on a real break (include it); the last one stops at the caller's limit
+                int end = (hi == cuts.size()) ? limit : cuts.get(hi) + 1;
+                int consumed = pieces.tokenize(r, cuts.get(lo), end);
+                return new Piece(r, consumed);
+            }
+            int mid = (lo + hi) >>> 1;
+            SegmentTask left = new SegmentTask(pieces, cuts, lo, mid, limit, options);
+            left.fork();
+            Piece right = new SegmentTask(pieces, cuts, mid, hi, limit, options).compute();
+            Piece merged = left.join();
+            merged.result.merge(right.result);
+            if (options.isRetainTokens()) merged.result.tokens.addAll(right.result.tokens);
+            return new Piece(merged.result, right.consumed);
+        }
+    }
+
+    /**
+     * Tokenizes the sentences of text from {@code from} (which must be a sentence break) whose
+     * break comes before limit, and returns where the first unprocessed sentence starts.
+     * The iterator still sees the text after limit, so look-ahead matches a full pass.
+     */
+    private static int processSentences(Emitter events, String text, int from, int limit, Engine engine) {
+        if (engine == Engine.LEGACY) {
+            return processSentencesLegacy(events, text, from, limit);
+        }
+
+        int start = from;
+        for (int end = SentenceScanner.nextBreak(text, start, text.length()); end >= 0 && end < limit;
+             start = end, end = SentenceScanner.nextBreak(text, start, text.length())) {
+            SentenceScanner.scanTokens(text, start, end, events);
+            events.endSentence();
+        }
+        return start;
+    }
+
+    /** Byte version of processSentences for Engine.UTF8; the text is text[0, length). */
+    private static int processSentencesUtf8(Result r, byte[] text, int from, int length, int limit) {
+        int start = from;
+        for (int end = SentenceScanner.nextBreak(text, start, length); end >= 0 && end < limit;
+             start = end, end = SentenceScanner.nextBreak(text, start, length)) {
+            SentenceScanner.scanTokens(text, start, end, r);
+            r.endSentence();
+        }
+        return start;
+    }
+
+    private static int processSentencesLegacy(Emitter events, String text, int from, int limit) {
         BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.US);
-        iterator.setText(text);
+        iterator.setText(new StringCharacterIterator(text, from, text.length(), from));
 
         int start = iterator.first();
-        for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
-            String sentence = text.substring(start, end).trim();
-            if (sentence.isEmpty()) continue;
+        for (int end = iterator.next(); end != BreakIterator.DONE && end < limit; start = end, end = iterator.next()) {
+            processSentence(events, text, start, end);
+        }
+        return start;
+    }
 
-            List<String> toks = tokenizeSentence(sentence);
-            if (toks.isEmpty()) continue;
+    /**
+     * First sentence break at or after from that is also a break of the full text, or -1 if
+     * there is none before limit. Starts from just after two adjacent letters, where no
+     * look-ahead rule can be pending (see {@link #settledPrefix}).
+     */
+    private static int breakAfter(String text, int from, int limit, Engine engine) {
+        for (int i = Math.max(from, 1); i < limit; i++) {
+            if (Character.isLetter(text.charAt(i)) && Character.isLetter(text.charAt(i - 1))) {
+                int b;
+                if (engine == Engine.LEGACY) {
+                    BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.US);
+                    iterator.setText(new StringCharacterIterator(text, i + 1, text.length(), i + 1));
+                    b = iterator.next();
+                } else {
+                    b = SentenceScanner.nextBreak(text, i + 1, text.length());
+                }
+                return (b != BreakIterator.DONE && b < limit) ? b : -1;
+            }
+        }
+        return -1;
+    }
 
-            r.tokens.addAll(toks);
-
-            int len = toks.size();
-            r.sentenceLengthCounts.merge(len, 1, Integer::sum);
-
-            //kevin
-            for (int i = 0; i < toks.size(); i++) {
-                String w = toks.get(i);
-                Word obj = r.words.computeIfAbsent(w, k -> {
-                    Word nw = new Word();
-                    nw.setWordValue(k);
-                    nw.setTotalOccurrences(0);
-                    nw.setStartSentenceCount(0);
-                    nw.setEndSequenceCount(0);
-                    return nw;
-                });
-                obj.setTotalOccurrences(obj.getTotalOccurrences() + 1);
-                if (i == 0) obj.setStartSentenceCount(obj.getStartSentenceCount() + 1);
-                if (i == toks.size() - 1)
-                    obj.setEndSequenceCount(obj.getEndSequenceCount() + 1);
-            }
-            //kevin & vincent
-            for (int i = 0; i < toks.size(); i++) {
-                String w1 = toks.get(i);
-                //bigram&trigram logic
-                if (i + 1 < toks.size()) {
-                    String w2 = toks.get(i + 1);
-                    String bigramKey = w1 + " " + w2;
-                    r.bigramCounts.merge(bigramKey, 1, Integer::sum);
-
-                    // End-of-sentence bigram
-                    if (i + 2 == toks.size()) {
-                        r.bigramEndCounts.merge(bigramKey, 1, Integer::sum);
-                    }
+    /**
+     * Length of the longest prefix of text whose sentence breaks can no longer change when more
+     * text is appended. BreakIterator's sentence rules look ahead past a period (spaces, quotes,
+     * the next letter) before placing a break, but no rule is still pending after two letters in
+     * a row, so everything up to the last such pair is settled. Returns 0 if there is none.
+     */
+    static int settledPrefix(CharSequence text) {
+        for (int i = text.length() - 1; i > 0; i--) {
+            if (Character.isLetter(text.charAt(i)) && Character.isLetter(text.charAt(i - 1))) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
 
-                    //trigram
-                    if (i + 2 < toks.size()) {
-                        String w3 = toks.get(i + 2);
-                        String trigramKey = w1 + " " + w2 + " " + w3;
+    private static void processSentence(Emitter events, String text, int start, int end) {
+        String sentence = text.substring(start, end).trim();
+        if (sentence.isEmpty()) return;
 
-                        r.trigramCounts.merge(trigramKey, 1, Integer::sum);
+        List<String> toks = tokenizeSentence(sentence);
+        if (toks.isEmpty()) return;
 
-                        // End-of-sentence trigram
-                        if (i + 3 == toks.size()) {
-                            r.trigramEndCounts.merge(trigramKey, 1, Integer::sum);
-                        }
-                    }
+        for (String tok : toks) {
+            events.token(tok);
+        }
+        events.endSentence();
+    }
+
+    /**
+     * Turns the flat token stream of a sentence scan into TokenSink events: sentenceStart before
+     * the first token, the tokens, then at endSentence() the sentence's n-grams and sentenceEnd.
+     */
+    private static final class Emitter implements TokenSink {
+        private final TokenSink sink;
+        private final int maxOrder;
+        private String[] sentence = new String[64];
+        private int length;
+
+        Emitter(TokenSink sink, int maxOrder) {
+            this.sink = sink;
+            this.maxOrder = maxOrder;
+        }
+
+        @Override
+        public void token(String token) {
+            if (length == 0) sink.sentenceStart();
+            if (length == sentence.length) sentence = Arrays.copyOf(sentence, length * 2);
+            sentence[length++] = token;
+            sink.token(token);
+        }
+
+        /** Ends the current sentence; does nothing if it had no tokens. */
+        void endSentence() {
+            int len = length;
+            if (len == 0) return;
+            length = 0;
+
+            List<String> words = (maxOrder > 3) ? Arrays.asList(sentence).subList(0, len) : null;
+            for (int i = 0; i + 1 < len; i++) {
+                sink.bigram(sentence[i], sentence[i + 1], i + 2 == len);
+                if (maxOrder >= 3 && i + 2 < len) {
+                    sink.trigram(sentence[i], sentence[i + 1], sentence[i + 2], i + 3 == len);
+                }
+                for (int k = 4; k <= maxOrder && i + k <= len; k++) {
+                    sink.ngram(words.subList(i, i + k), i + k == len);
                 }
             }
+            sink.sentenceEnd(len);
         }
-        return r;
     }
 
     /** Tokenize a single sentence (clean punctuation, lowercase). */
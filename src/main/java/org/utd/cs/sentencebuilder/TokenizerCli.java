@@ -10,25 +10,45 @@
  *  - Reads a .txt file (default: data/sample.txt)
  *  - Prints top unigrams (using Word objects)
  *  - Prints top followers of a probe word from bigramCounts
+ *  - --legacy uses the old BreakIterator/regex engine, --utf8 the byte-level
+ *    one; --compare runs all engines on the file and reports the first
+ *    difference from LEGACY, if any
  */
 
  package org.utd.cs.sentencebuilder;
 
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.List;
 import java.util.Map.Entry;
 
 public class TokenizerCli {
     public static void main(String[] args) throws Exception {
-        String path = (args.length > 0) ? args[0] : "data/sample.txt";
+        String path = "data/sample.txt";
+        Tokenizer.Engine engine = Tokenizer.Engine.SCANNER;
+        boolean compare = false;
+        for (String arg : args) {
+            if (arg.equals("--legacy")) engine = Tokenizer.Engine.LEGACY;
+            else if (arg.equals("--utf8")) engine = Tokenizer.Engine.UTF8;
+            else if (arg.equals("--compare")) compare = true;
+            else path = arg;
+        }
         System.out.println("Reading: " + path);
 
-        Tokenizer.Result res = Tokenizer.processFile(path);
+        if (compare) {
+            compareEngines(Path.of(path));
+            return;
+        }
+
+        // debug CLI: keep the full token list (the importer only counts)
+        Tokenizer.Result res = Tokenizer.processFile(Path.of(path),
+                new Tokenizer.Options().setEngine(engine).setRetainTokens(true));
 
         System.out.println("\nTokens: " + res.tokens.size());
-        System.out.println("Unique words (Word objects): " + res.words.size());
+        System.out.println("Unique words (Word objects): " + res.dictionary.size());
 
-        Map<String,Integer> uniCount = Tokenizer.toUnigramCountMap(res.words);
+        Map<String, Word> words = res.words();
+        Map<String,Integer> uniCount = Tokenizer.toUnigramCountMap(words);
 
         System.out.println("\nTop 10 words:");
         List<Entry<String,Integer>> top = Tokenizer.topK(uniCount, 10);
@@ -47,7 +67,7 @@ public class TokenizerCli {
         **/
 
         // Show one Word object to confirm fields are set
-        res.words.entrySet().stream().limit(1).forEach(e -> {
+        words.entrySet().stream().limit(1).forEach(e -> {
             Word w = e.getValue();
             System.out.println("\nSample Word object:");
             System.out.println("value=" + w.getWordValue()
@@ -56,4 +76,71 @@ public class TokenizerCli {
                     + ", end=" + w.getEndSequenceCount());
         });
     }
+
+    /** Tokenizes the file with every engine and prints whether the results are identical. */
+    private static void compareEngines(Path path) throws Exception {
+        Tokenizer.Result legacy = timed(path, Tokenizer.Engine.LEGACY);
+        for (Tokenizer.Engine engine : Tokenizer.Engine.values()) {
+            if (engine == Tokenizer.Engine.LEGACY) continue;
+            Tokenizer.Result res = timed(path, engine);
+            String diff = firstDifference(legacy, res);
+            if (diff == null) {
+                System.out.println("  identical to LEGACY: " + res.tokens.size() + " tokens, "
+                        + res.dictionary.size() + " words, " + res.bigrams.size() + " bigrams, "
+                        + res.trigrams.size() + " trigrams");
+            } else {
+                System.out.println("  MISMATCH: " + diff);
+            }
+        }
+    }
+
+    private static Tokenizer.Result timed(Path path, Tokenizer.Engine engine) throws Exception {
+        long t0 = System.nanoTime();
+        Tokenizer.Result res = Tokenizer.processFile(path,
+                new Tokenizer.Options().setEngine(engine).setRetainTokens(true));
+        System.out.printf("%-8s %d ms%n", engine + ":", (System.nanoTime() - t0) / 1_000_000);
+        return res;
+    }
+
+    /**
+     * All engines see the same sentences in the same order, so equal results also have equal
+     * local ids and slots; this compares them entry by entry. Returns null if nothing differs.
+     */
+    private static String firstDifference(Tokenizer.Result a, Tokenizer.Result b) {
+        for (int i = 0; i < Math.min(a.tokens.size(), b.tokens.size()); i++) {
+            if (!a.tokens.get(i).equals(b.tokens.get(i))) {
+                return "token " + i + ": '" + a.tokens.get(i) + "' vs '" + b.tokens.get(i) + "'";
+            }
+        }
+        if (a.tokens.size() != b.tokens.size()) {
+            return "token count " + a.tokens.size() + " vs " + b.tokens.size();
+        }
+        if (!a.sentenceLengthCounts.equals(b.sentenceLengthCounts)) {
+            return "sentence lengths " + a.sentenceLengthCounts + " vs " + b.sentenceLengthCounts;
+        }
+
+        WordDictionary da = a.dictionary, db = b.dictionary;
+        if (da.size() != db.size()) return "word count " + da.size() + " vs " + db.size();
+        for (int id = 0; id < da.size(); id++) {
+            if (!da.word(id).equals(db.word(id))
+                    || da.totalOccurrences(id) != db.totalOccurrences(id)
+                    || da.startSentenceCount(id) != db.startSentenceCount(id)
+                    || da.endSequenceCount(id) != db.endSequenceCount(id)) {
+                return "word '" + da.word(id) + "' vs '" + db.word(id) + "'";
+            }
+        }
+
+        String d = firstDifference("bigram", a.bigrams, b.bigrams);
+        return (d != null) ? d : firstDifference("trigram", a.trigrams, b.trigrams);
+    }
+
+    private static String firstDifference(String what, NgramCounter a, NgramCounter b) {
+        if (a.size() != b.size()) return what + " count " + a.size() + " vs " + b.size();
+        for (int slot = 0; slot < a.size(); slot++) {
+            if (a.key(slot) != b.key(slot) || a.count(slot) != b.count(slot) || a.endCount(slot) != b.endCount(slot)) {
+                return what + " #" + slot;
+            }
+        }
+        return null;
+    }
 }
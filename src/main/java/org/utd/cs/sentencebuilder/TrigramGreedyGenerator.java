@@ -31,24 +31,18 @@ public class TrigramGreedyGenerator implements SentenceGenerator {
     private final Map<String, Integer> wordToId;
     private final Map<Integer, String> idToWord;
     // (w1,w2) encoded as long -> list of (w3, count), sorted desc by count
-    private final Map<Long, List<int[]>> followers;
+    private final FollowerTable followers;
 
     /** Given a first word id, pick a good second id so (w1,w2) is a valid trigram context. */
     private Integer pickGreedySecondGivenFirst(int firstId) {
         int bestSecond = -1;
         int bestTotal  = -1;
 
-        for (Map.Entry<Long, List<int[]>> e : followers.entrySet()) {
-            long key = e.getKey();
-            int w1 = (int) (key >> 32);
-            if (w1 != firstId) continue;
-
-            int w2 = (int) key;
-
-            int total = 0;
-            for (int[] arr : e.getValue()) {
-                total += arr[1];
-            }
+        // contexts are sorted, so those starting with firstId are adjacent
+        int to = followers.lowerBound(makePairKey(firstId + 1, 0), 0);
+        for (int c = followers.lowerBound(makePairKey(firstId, 0), 0); c < to; c++) {
+            int w2 = (int) followers.contextHi(c);
+            int total = followers.total(c);
 
             if (total > bestTotal) {
                 bestTotal  = total;
@@ -61,7 +55,7 @@ public class TrigramGreedyGenerator implements SentenceGenerator {
 
     public TrigramGreedyGenerator(Map<String, Integer> wordToId,
                                   Map<Integer, String> idToWord,
-                                  Map<Long, List<int[]>> trigramFollowers,
+                                  FollowerTable trigramFollowers,
                                   List<int[]> startCandidates) {
         this.wordToId        = wordToId;
         this.idToWord        = idToWord;
@@ -117,7 +111,7 @@ public class TrigramGreedyGenerator implements SentenceGenerator {
 
             Integer maybeSecond = wordToId.get(startingWords.get(1).toLowerCase(Locale.ROOT));
             if (firstId != null && maybeSecond != null &&
-                followers.containsKey(makePairKey(firstId, maybeSecond))) {
+                followers.find(makePairKey(firstId, maybeSecond)) >= 0) {
                 secondId = maybeSecond;
             }
         }
@@ -158,7 +152,7 @@ public class TrigramGreedyGenerator implements SentenceGenerator {
 
         if (firstId != null && secondId != null) {
             long key = makePairKey(firstId, secondId);
-            if (!followers.containsKey(key)) {
+            if (followers.find(key) < 0) {
                 // invalid (w1,w2) pair, treat as if we only had w1
                 secondId = null;
             }
@@ -185,7 +179,7 @@ public class TrigramGreedyGenerator implements SentenceGenerator {
             return List.of();
         }
 
-        long key = followers.keySet().iterator().next();
+        long key = followers.contextHi(0);
         int w1 = (int) (key >> 32);
         int w2 = (int) key;
         return List.of(w1, w2);
@@ -208,15 +202,15 @@ public class TrigramGreedyGenerator implements SentenceGenerator {
 
         while (ids.size() < Math.max(2, maxTokens)) {
             long pairKey = makePairKey(secondLast, last);
-            List<int[]> cands = followers.get(pairKey);
+            int context = followers.find(pairKey);
 
-            if (cands == null || cands.isEmpty()) {
+            if (context < 0) {
                 break;
             }
 
             int nextId = -1;
-            for (int[] cand : cands) {
-                int candId = cand[0];
+            for (int row = followers.first(context); row < followers.end(context); row++) {
+                int candId = followers.next(row);
 
                 String trigramSig = secondLast + "-" + last + "-" + candId;
                 if (usedTrigrams.contains(trigramSig)) continue;
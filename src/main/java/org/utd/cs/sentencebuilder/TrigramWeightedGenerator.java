@@ -25,11 +25,11 @@ public class TrigramWeightedGenerator implements SentenceGenerator {
 
     private final Map<String, Integer> wordToId;
     private final Map<Integer, String> idToWord;
-    private final Map<Long, List<int[]>> followers;
+    private final FollowerTable followers;
 
     public TrigramWeightedGenerator(Map<String, Integer> wordToId,
                                     Map<Integer, String> idToWord,
-                                    Map<Long, List<int[]>> trigramFollowers,
+                                    FollowerTable trigramFollowers,
                                     List<int[]> startCandidates) {
         this.wordToId        = wordToId;
         this.idToWord        = idToWord;
@@ -38,32 +38,21 @@ public class TrigramWeightedGenerator implements SentenceGenerator {
 
     /** Weighted choice of secondId given firstId, based on total trigram counts. */
     private Integer pickWeightedSecondGivenFirst(int firstId) {
-        Map<Integer, Integer> secondTotals = new HashMap<>();
+        // contexts are sorted, so those starting with firstId are adjacent
+        int from = followers.lowerBound(makePairKey(firstId, 0), 0);
+        int to   = followers.lowerBound(makePairKey(firstId + 1, 0), 0);
+        if (from == to) return null;
 
-        for (Map.Entry<Long, List<int[]>> e : followers.entrySet()) {
-            long key = e.getKey();
-            int w1 = (int) (key >> 32);
-            if (w1 != firstId) continue;
-
-            int w2 = (int) key;
-            int total = 0;
-            for (int[] arr : e.getValue()) {
-                total += arr[1];
-            }
-            secondTotals.merge(w2, total, Integer::sum);
-        }
-
-        if (secondTotals.isEmpty()) return null;
-
-        int sum = secondTotals.values().stream().mapToInt(Integer::intValue).sum();
+        int sum = 0;
+        for (int c = from; c < to; c++) sum += followers.total(c);
         int roll = random.nextInt(sum);
         int cumulative = 0;
 
-        for (Map.Entry<Integer,Integer> e : secondTotals.entrySet()) {
-            cumulative += e.getValue();
-            if (roll < cumulative) return e.getKey();
+        for (int c = from; c < to; c++) {
+            cumulative += followers.total(c);
+            if (roll < cumulative) return (int) followers.contextHi(c);
         }
-        return secondTotals.keySet().iterator().next();
+        return (int) followers.contextHi(from);
     }
 
     /** Pick a start pair (w1, w2) from trigramFollowers. Currently uniform over keys. */
@@ -72,7 +61,7 @@ public class TrigramWeightedGenerator implements SentenceGenerator {
             return List.of();
         }
 
-        long key = followers.keySet().iterator().next();
+        long key = followers.contextHi(0);
         int w1 = (int) (key >> 32);
         int w2 = (int) key;
         return List.of(w1, w2);
@@ -126,7 +115,7 @@ public class TrigramWeightedGenerator implements SentenceGenerator {
 
             Integer maybeSecond = wordToId.get(startingWords.get(1).toLowerCase(Locale.ROOT));
             if (firstId != null && maybeSecond != null &&
-                followers.containsKey(makePairKey(firstId, maybeSecond))) {
+                followers.find(makePairKey(firstId, maybeSecond)) >= 0) {
                 secondId = maybeSecond;
             }
         }
@@ -165,7 +154,7 @@ public class TrigramWeightedGenerator implements SentenceGenerator {
 
         if (firstId != null && secondId != null) {
             long key = makePairKey(firstId, secondId);
-            if (!followers.containsKey(key)) {
+            if (followers.find(key) < 0) {
                 secondId = null;
             }
         }
@@ -203,15 +192,15 @@ public class TrigramWeightedGenerator implements SentenceGenerator {
 
         while (ids.size() < Math.max(2, maxTokens)) {
             long key = makePairKey(secondLast, last);
-            List<int[]> cands = followers.get(key);
-            if (cands == null || cands.isEmpty()) {
+            int context = followers.find(key);
+            if (context < 0) {
                 break;
             }
 
             int nextId = -1;
             int attempts = 0;
             while (attempts < 10 && nextId == -1) {
-                int candId = chooseWeightedNext(cands);
+                int candId = chooseWeightedNext(context);
 
                 if (candId == last) {
                     attempts++;
@@ -248,17 +237,14 @@ public class TrigramWeightedGenerator implements SentenceGenerator {
         return render(ids);
     }
 
-    private int chooseWeightedNext(List<int[]> cands) {
-        int total = 0;
-        for (int[] c : cands) total += c[1];
-
-        int roll = random.nextInt(total);
+    private int chooseWeightedNext(int context) {
+        int roll = random.nextInt(followers.total(context));
         int cumulative = 0;
-        for (int[] c : cands) {
-            cumulative += c[1];
-            if (roll < cumulative) return c[0];
+        for (int row = followers.first(context); row < followers.end(context); row++) {
+            cumulative += followers.count(row);
+            if (roll < cumulative) return followers.next(row);
         }
-        return cands.get(0)[0];
+        return followers.next(followers.first(context));
     }
 
     private static long makePairKey(int w1, int w2) {
@@ -0,0 +1,179 @@
+/**
+ * WordDictionary.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Dictionary encoding for tokens. Every distinct word gets a small int id
+ *  (0, 1, 2, ... in order of first appearance) together with its total,
+ *  sentence-start and sentence-end counts, all in primitive arrays.
+ *  The ids are local to one dictionary; they are NOT database word_ids.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class WordDictionary {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] words;
+    private int[] totals;
+    private int[] starts;
+    private int[] ends;
+    private int size;
+
+    // hash index: id + 1, or 0 for an empty bucket (length is a power of two)
+    private int[] table;
+
+    public WordDictionary() {
+        words = new String[INITIAL_CAPACITY];
+        totals = new int[INITIAL_CAPACITY];
+        starts = new int[INITIAL_CAPACITY];
+        ends = new int[INITIAL_CAPACITY];
+        table = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /** @return the id of word, assigning the next free id if it is new */
+    public int add(String word) {
+        int mask = table.length - 1;
+        int b = hash(word) & mask;
+        for (int e = table[b]; e != 0; e = table[b]) {
+            if (words[e - 1].equals(word)) return e - 1;
+            b = (b + 1) & mask;
+        }
+
+        int id = size++;
+        if (id == words.length) grow();
+        words[id] = word;
+        table[b] = id + 1;
+        if (size * 2 > table.length) rehash(table.length * 2);
+        return id;
+    }
+
+    /**
+     * Same as add(new String(ascii, from, to - from).toLowerCase(Locale.ROOT)) for ASCII bytes,
+     * but only makes the String when the word is new.
+     * @return the id of the lowercased word
+     */
+    public int addLowerAscii(byte[] ascii, int from, int to) {
+        // String.hashCode of the lowercased word, computed on the bytes
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + lower(ascii[i]);
+        h *= 0x9E3779B9;
+        h ^= h >>> 16;
+
+        int len = to - from;
+        int mask = table.length - 1;
+        int b = h & mask;
+        for (int e = table[b]; e != 0; e = table[b]) {
+            if (equalsLowerAscii(words[e - 1], ascii, from, len)) return e - 1;
+            b = (b + 1) & mask;
+        }
+
+        byte[] lowered = new byte[len];
+        for (int i = 0; i < len; i++) lowered[i] = lower(ascii[from + i]);
+        int id = size++;
+        if (id == words.length) grow();
+        words[id] = new String(lowered, StandardCharsets.ISO_8859_1);
+        table[b] = id + 1;
+        if (size * 2 > table.length) rehash(table.length * 2);
+        return id;
+    }
+
+    private static boolean equalsLowerAscii(String word, byte[] ascii, int from, int len) {
+        if (word.length() != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (word.charAt(i) != lower(ascii[from + i])) return false;
+        }
+        return true;
+    }
+
+    private static byte lower(byte c) {
+        return (c >= 'A' && c <= 'Z') ? (byte) (c + 32) : c;
+    }
+
+    /** @return the id of word, or -1 if it is not in the dictionary */
+    public int idOf(String word) {
+        int mask = table.length - 1;
+        int b = hash(word) & mask;
+        for (int e = table[b]; e != 0; e = table[b]) {
+            if (words[e - 1].equals(word)) return e - 1;
+            b = (b + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Adds to the total/start/end counters of an existing id. */
+    public void addCounts(int id, int total, int start, int end) {
+        totals[id] += total;
+        starts[id] += start;
+        ends[id] += end;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String word(int id) {
+        return words[id];
+    }
+
+    public int totalOccurrences(int id) {
+        return totals[id];
+    }
+
+    public int startSentenceCount(int id) {
+        return starts[id];
+    }
+
+    public int endSequenceCount(int id) {
+        return ends[id];
+    }
+
+    /** The words in id order, as a read-only view (no copy), e.g. for DatabaseManager.resolveWordIds. */
+    public List<String> wordList() {
+        return Collections.unmodifiableList(Arrays.asList(words).subList(0, size));
+    }
+
+    /** Builds one Word object per entry (word_id left unset), e.g. for DatabaseManager.addWordsInBatch. */
+    public List<Word> toWords() {
+        List<Word> out = new ArrayList<>(size);
+        for (int id = 0; id < size; id++) {
+            Word w = new Word(words[id]);
+            w.setTotalOccurrences(totals[id]);
+            w.setStartSentenceCount(starts[id]);
+            w.setEndSequenceCount(ends[id]);
+            out.add(w);
+        }
+        return out;
+    }
+
+    private void grow() {
+        int cap = words.length + (words.length >> 1);
+        words = Arrays.copyOf(words, cap);
+        totals = Arrays.copyOf(totals, cap);
+        starts = Arrays.copyOf(starts, cap);
+        ends = Arrays.copyOf(ends, cap);
+    }
+
+    private void rehash(int newLength) {
+        int[] t = new int[newLength];
+        int mask = newLength - 1;
+        for (int id = 0; id < size; id++) {
+            int b = hash(words[id]) & mask;
+            while (t[b] != 0) b = (b + 1) & mask;
+            t[b] = id + 1;
+        }
+        table = t;
+    }
+
+    private static int hash(String word) {
+        int h = word.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * WordIdCache.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  In-process copy of the words table (word -> word_id) that hands out the ids
+ *  of new words itself, from ranges reserved with DatabaseManager.reserveWordIds.
+ *  Loaded once per ImporterCli; afterwards every word's database id is known as
+ *  soon as the word is seen, so n-gram rows never wait on a lookup query. The
+ *  copy goes stale when the table is cleared or rebuilt, so it is not kept
+ *  across imports that something else might run in between.
+ *
+ *  New words must be written with their ids (DatabaseManager.importFile).
+ *  If the table already holds a word under another id (another importer added it
+ *  meanwhile, or the column's collation treats two spellings as equal, like "cafe"
+ *  and "café"), the insert only adds counts to that row. reconcile() then asks the
+ *  table for each word's row, matched in the column's collation, and takes its id.
+ *  A word with no row at all (its file failed to import) keeps no id until a later
+ *  import writes it, so storedIdsFor() leaves its n-grams out instead of pointing
+ *  them at an id no row has.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+public class WordIdCache {
+
+    // most ids reserved per round trip; a call reserves only as many as it has new words
+    private static final int MAX_RESERVE = 1 << 16;
+
+    /** The words table as the cache uses it; DatabaseManager in the application. */
+    public interface Store {
+        /** Passes every (word_value, word_id) row to consumer. */
+        void scanWordIds(ObjIntConsumer<String> consumer) throws SQLException;
+
+        /** word_id per position of words, compared in the column's collation; -1 where there is none. */
+        int[] resolveWordIds(List<String> words) throws SQLException;
+
+        /** Reserves count unused consecutive word_ids and returns the first. */
+        int reserveWordIds(int count) throws SQLException;
+    }
+
+    private final Store db;
+    private final WordDictionary words = new WordDictionary();
+    private int[] wordIds = new int[1024]; // word_id per local id of words
+    private int loaded;                    // local ids below this came from the table
+    private int reconciled;                // ... and below this have been checked against it
+    private final List<Integer> reassigned = new ArrayList<>(); // checked before, to check again
+
+    // reserved, still unused ids: [nextId, reservedEnd)
+    private int nextId;
+    private int reservedEnd;
+
+    private WordIdCache(Store db) {
+        this.db = db;
+    }
+
+    /** Reads every word and its id from the words table. */
+    public static WordIdCache load(Store db) throws SQLException {
+        WordIdCache cache = new WordIdCache(db);
+        db.scanWordIds(cache::put);
+        cache.loaded = cache.words.size();
+        cache.reconciled = cache.loaded;
+        return cache;
+    }
+
+    /** Words known (loaded plus assigned). */
+    public synchronized int size() {
+        return words.size();
+    }
+
+    /** Words that were not in the table when the cache was loaded. */
+    public synchronized int newWordCount() {
+        return words.size() - loaded;
+    }
+
+    /** @return the word_id of word, or -1 if it is neither in the table nor assigned */
+    public synchronized int idOf(String word) {
+        int local = words.idOf(word);
+        return local < 0 ? -1 : wordIds[local];
+    }
+
+    /**
+     * word_id for every local id of dictionary; words not seen before, or that reconcile() found
+     * missing from the table, get the next reserved id. Ids are reserved for just the words that
+     * need one (at most MAX_RESERVE per round trip), so small imports leave no large gaps.
+     */
+    public synchronized int[] idsFor(WordDictionary dictionary) throws SQLException {
+        int[] out = new int[dictionary.size()];
+        int missing = 0;
+        for (int id = 0; id < out.length; id++) {
+            int local = words.idOf(dictionary.word(id));
+            if (local < 0 || wordIds[local] < 0) missing++;
+        }
+        for (int id = 0; id < out.length; id++) {
+            String word = dictionary.word(id);
+            int local = words.idOf(word);
+            if (local < 0) {
+                local = put(word, nextReservedId(missing--));
+            } else if (wordIds[local] < 0) {
+                wordIds[local] = nextReservedId(missing--);
+                if (local < reconciled) reassigned.add(local);
+            }
+            out[id] = wordIds[local];
+        }
+        return out;
+    }
+
+    /**
+     * word_id for every local id of dictionary, without assigning any: words the cache does not
+     * know are looked up in the table (they may be stored under a collation-equal spelling), and
+     * -1 is left for words with no row, including those reconcile() found missing. Call after
+     * reconcile(), so every id returned has a row; n-gram rows may only refer to those.
+     */
+    public synchronized int[] storedIdsFor(WordDictionary dictionary) throws SQLException {
+        int[] out = new int[dictionary.size()];
+        List<Integer> unknown = new ArrayList<>();
+        for (int id = 0; id < out.length; id++) {
+            int local = words.idOf(dictionary.word(id));
+            if (local < 0) unknown.add(id);
+            out[id] = local < 0 ? -1 : wordIds[local];
+        }
+        if (!unknown.isEmpty()) {
+            List<String> lookup = new ArrayList<>(unknown.size());
+            for (int id : unknown) lookup.add(dictionary.word(id));
+            int[] stored = db.resolveWordIds(lookup);
+            for (int i = 0; i < stored.length; i++) {
+                int id = unknown.get(i);
+                out[id] = stored[i];
+                if (stored[i] >= 0) put(dictionary.word(id), stored[i]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Words of dictionary with their counts and word_ids from this cache, ready for
+     * DatabaseManager.importFile.
+     */
+    public List<Word> toWords(WordDictionary dictionary) throws SQLException {
+        int[] ids = idsFor(dictionary);
+        List<Word> out = dictionary.toWords();
+        for (int id = 0; id < ids.length; id++) out.get(id).setWordId(ids[id]);
+        return out;
+    }
+
+    /**
+     * Re-reads the ids of the words this cache assigned since the last call and takes the table's id
+     * where it differs (-1 where the word never made it into the table). Call after the words have
+     * been written.
+     *
+     * @return number of words whose id changed
+     */
+    public synchronized int reconcile() throws SQLException {
+        List<Integer> locals = new ArrayList<>(reassigned);
+        for (int local = reconciled; local < words.size(); local++) locals.add(local);
+        List<String> assigned = new ArrayList<>(locals.size());
+        for (int local : locals) assigned.add(words.word(local));
+
+        int[] stored = db.resolveWordIds(assigned);
+        int changed = 0;
+        for (int i = 0; i < stored.length; i++) {
+            int local = locals.get(i);
+            if (wordIds[local] != stored[i]) {
+                wordIds[local] = stored[i];
+                changed++;
+            }
+        }
+        reassigned.clear();
+        reconciled = words.size();
+        return changed;
+    }
+
+    /** The next reserved id; wanted is how many ids the caller still needs, this one included. */
+    private int nextReservedId(int wanted) throws SQLException {
+        if (nextId == reservedEnd) {
+            int count = Math.min(wanted, MAX_RESERVE);
+            nextId = db.reserveWordIds(count);
+            reservedEnd = nextId + count;
+        }
+        return nextId++;
+    }
+
+    private int put(String word, int wordId) {
+        int local = words.add(word);
+        if (local == wordIds.length) wordIds = Arrays.copyOf(wordIds, local * 2);
+        wordIds[local] = wordId;
+        return local;
+    }
+}
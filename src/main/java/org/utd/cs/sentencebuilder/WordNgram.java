@@ -0,0 +1,71 @@
+package org.utd.cs.sentencebuilder;
+
+/**
+ * Represents an n-gram of order 4 or 5 in the 'ngram_sequence' table:
+ * the ids of its first n-1 words (the context) and the word that follows them.
+ * This class is a simple Plain Old Java Object (POJO) to hold n-gram data.
+ */
+public class WordNgram {
+    private long sequenceId;
+    private int order;
+    private int[] contextWordIds;
+    private int nextWordId;
+    private int occurrenceCount;
+    private int endFrequency;
+
+    // Constructors
+    public WordNgram() {}
+
+    public WordNgram(int[] contextWordIds, int nextWordId, int occurrenceCount) {
+        this.order = contextWordIds.length + 1;
+        this.contextWordIds = contextWordIds;
+        this.nextWordId = nextWordId;
+        this.occurrenceCount = occurrenceCount;
+    }
+
+    // Getters and Setters
+    public long getSequenceId() {
+        return sequenceId;
+    }
+
+    public void setSequenceId(long sequenceId) {
+        this.sequenceId = sequenceId;
+    }
+
+    /** Number of words, context included (4 or 5). */
+    public int getOrder() {
+        return order;
+    }
+
+    public int[] getContextWordIds() {
+        return contextWordIds;
+    }
+
+    /** Sets the context, and with it the order (context length + 1). */
+    public void setContextWordIds(int[] contextWordIds) {
+        this.contextWordIds = contextWordIds;
+        this.order = contextWordIds.length + 1;
+    }
+
+    public NgramKey getContextKey() {
+        return NgramKey.of(contextWordIds, 0, contextWordIds.length);
+    }
+
+    public int getNextWordId() {
+        return nextWordId;
+    }
+
+    public void setNextWordId(int nextWordId) {this.nextWordId = nextWordId;}
+
+    public int getOccurrenceCount() {
+        return occurrenceCount;
+    }
+
+    public void setOccurrenceCount(int occurrenceCount) {
+        this.occurrenceCount = occurrenceCount;
+    }
+
+    public int getEndFrequency() {return endFrequency; }
+
+    public void setEndFrequency(int endFrequency) {this.endFrequency = endFrequency; }
+}
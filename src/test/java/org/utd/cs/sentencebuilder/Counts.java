@@ -0,0 +1,104 @@
+/**
+ * Counts.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  Test helper: the counts of a Tokenizer.Result (or of a drained SpillingAggregate)
+ *  keyed by word strings instead of local ids, so results built by different
+ *  engines, chunkings or merge orders can be compared with assertEquals.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class Counts {
+
+    /** word -> [total, start, end] */
+    final Map<String, List<Integer>> words = new TreeMap<>();
+    /** [order] -> "w1 w2 .." -> [count, end] */
+    final List<Map<String, List<Integer>>> ngrams = new ArrayList<>();
+    final Map<Integer, Integer> sentenceLengths = new TreeMap<>();
+    long tokens;
+
+    private Counts(int maxOrder) {
+        for (int k = 0; k <= maxOrder; k++) ngrams.add(new TreeMap<>());
+    }
+
+    static Counts of(Tokenizer.Result r) {
+        Counts c = new Counts(r.maxOrder());
+        WordDictionary dict = r.dictionary;
+        for (int id = 0; id < dict.size(); id++) {
+            c.words.put(dict.word(id),
+                    List.of(dict.totalOccurrences(id), dict.startSentenceCount(id), dict.endSequenceCount(id)));
+        }
+        for (int k = 2; k <= r.maxOrder(); k++) {
+            NgramCounter counter = r.ngramCounts(k);
+            for (int slot = 0; slot < counter.size(); slot++) {
+                c.ngrams.get(k).put(String.join(" ", words(r, k, slot)),
+                        List.of(counter.count(slot), counter.endCount(slot)));
+            }
+        }
+        c.sentenceLengths.putAll(r.sentenceLengthCounts);
+        c.tokens = r.tokenCount();
+        return c;
+    }
+
+    /** The n-gram totals of a finished aggregate; words, sentence lengths and tokens are left empty. */
+    static Counts of(SpillingAggregate aggregate) throws IOException {
+        Counts c = new Counts(aggregate.maxOrder());
+        WordDictionary dict = aggregate.finish();
+        int[] ids = new int[dict.size()];
+        for (int id = 0; id < ids.length; id++) ids[id] = id;
+        for (int k = 2; k <= aggregate.maxOrder(); k++) {
+            Map<String, List<Integer>> into = c.ngrams.get(k);
+            aggregate.drain(k, ids, (wordIds, count, end) -> {
+                List<String> w = new ArrayList<>();
+                for (int id : wordIds) w.add(dict.word(id));
+                into.put(String.join(" ", w), List.of(count, end));
+            });
+        }
+        return c;
+    }
+
+    private static List<String> words(Tokenizer.Result r, int k, int slot) {
+        long key = r.ngramCounts(k).key(slot);
+        List<String> w = (k == 2)
+                ? new ArrayList<>(List.of(r.dictionary.word(NgramCounter.high(key))))
+                : words(r, k - 1, NgramCounter.high(key));
+        w.add(r.dictionary.word(NgramCounter.low(key)));
+        return w;
+    }
+
+    /** Fails on the first word, n-gram or histogram entry whose counts differ. */
+    static void assertSame(Counts expected, Counts actual, String what) {
+        assertSameMap(expected.words, actual.words, what + ": words");
+        assertSameNgrams(expected, actual, what);
+        assertEquals(expected.sentenceLengths, actual.sentenceLengths, what + ": sentence lengths");
+        assertEquals(expected.tokens, actual.tokens, what + ": tokens");
+    }
+
+    static void assertSameNgrams(Counts expected, Counts actual, String what) {
+        assertEquals(expected.ngrams.size(), actual.ngrams.size(), what + ": orders");
+        for (int k = 2; k < expected.ngrams.size(); k++) {
+            assertSameMap(expected.ngrams.get(k), actual.ngrams.get(k), what + ": " + k + "-grams");
+        }
+    }
+
+    private static void assertSameMap(Map<String, List<Integer>> expected, Map<String, List<Integer>> actual,
+                                      String what) {
+        for (Map.Entry<String, List<Integer>> e : expected.entrySet()) {
+            assertEquals(e.getValue(), actual.get(e.getKey()), what + " [" + e.getKey() + "]");
+        }
+        for (String key : actual.keySet()) {
+            assertTrue(expected.containsKey(key), what + ": unexpected [" + key + "]");
+        }
+    }
+}
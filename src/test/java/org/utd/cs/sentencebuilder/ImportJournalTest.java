@@ -0,0 +1,183 @@
+/**
+ * ImportJournalTest.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  A committed journal replays exactly the rows written to it, in numbered chunks,
+ *  and rowsByOrder counts them per n-gram order from the chunk headers alone; one
+ *  that was never committed leaves nothing behind.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImportJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static List<WordPair> pairs(int n) {
+        List<WordPair> rows = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            WordPair wp = new WordPair(i, i + 1);
+            wp.setOccurrenceCount(i);
+            wp.setEndFrequency(i % 2);
+            rows.add(wp);
+        }
+        return rows;
+    }
+
+    private static List<WordTriplet> triplets(int n) {
+        List<WordTriplet> rows = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            WordTriplet wt = new WordTriplet(i, i + 1, i + 2, i);
+            wt.setEndFrequency(i % 3);
+            rows.add(wt);
+        }
+        return rows;
+    }
+
+    private static List<WordNgram> ngrams(int order, int n) {
+        List<WordNgram> rows = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            int[] context = new int[order - 1];
+            for (int j = 0; j < context.length; j++) context[j] = i + j;
+            WordNgram wn = new WordNgram(context, i + order, i);
+            wn.setEndFrequency(1);
+            rows.add(wn);
+        }
+        return rows;
+    }
+
+    private static String row(WordPair wp) {
+        return wp.getPrecedingWordId() + " " + wp.getFollowingWordId() + " " + wp.getOccurrenceCount() + "/" + wp.getEndFrequency();
+    }
+
+    private static String row(WordTriplet wt) {
+        return wt.getFirstWordId() + " " + wt.getSecondWordId() + " " + wt.getThirdWordId() + " "
+                + wt.getOccurrenceCount() + "/" + wt.getEndFrequency();
+    }
+
+    private static String row(WordNgram wn) {
+        return Arrays.toString(wn.getContextWordIds()) + " " + wn.getNextWordId() + " "
+                + wn.getOccurrenceCount() + "/" + wn.getEndFrequency();
+    }
+
+    @Test
+    void replaysTheRowsInChunks() throws Exception {
+        List<WordPair> pairs = pairs(25);
+        List<WordTriplet> triplets = triplets(7);
+        List<WordNgram> fourGrams = ngrams(4, 9);
+        Path journal;
+        try (ImportJournal.Writer out = ImportJournal.create(dir, "batch", 7, 1)) {
+            journal = out.addWordPairs(pairs).addWordTriplets(triplets).addWordNgrams(4, fourGrams).commit();
+        }
+        assertEquals(List.of(journal), ImportJournal.list(dir));
+        assertEquals("batch", ImportJournal.batchIdOf(journal));
+
+        List<String> chunks = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+        ImportJournal.replay(journal, new ImportJournal.Chunks() {
+            @Override
+            public void wordPairs(int part, int chunk, int partition, List<WordPair> chunkRows) {
+                chunks.add(part + ":" + chunk + ":" + chunkRows.size());
+                for (WordPair wp : chunkRows) rows.add(row(wp));
+            }
+
+            @Override
+            public void wordTriplets(int part, int chunk, int partition, List<WordTriplet> chunkRows) {
+                chunks.add(part + ":" + chunk + ":" + chunkRows.size());
+                for (WordTriplet wt : chunkRows) rows.add(row(wt));
+            }
+
+            @Override
+            public void wordNgrams(int part, int chunk, int partition, List<WordNgram> chunkRows) {
+                chunks.add(part + ":" + chunk + ":" + chunkRows.size());
+                for (WordNgram wn : chunkRows) rows.add(row(wn));
+            }
+        });
+
+        assertEquals(List.of("0:0:7", "0:1:7", "0:2:7", "0:3:4", "1:0:7", "2:0:7", "2:1:2"), chunks);
+        List<String> written = new ArrayList<>();
+        for (WordPair wp : pairs) written.add(row(wp));
+        for (WordTriplet wt : triplets) written.add(row(wt));
+        for (WordNgram wn : fourGrams) written.add(row(wn));
+        assertEquals(written, rows);
+    }
+
+    @Test
+    void rowsByOrderMatchesReplay() throws Exception {
+        int[] written = new int[Tokenizer.MAX_ORDER + 1];
+        Path journal;
+        try (ImportJournal.Writer out = ImportJournal.create(dir, "batch", 7, 3)) {
+            for (int order = 2; order <= Tokenizer.MAX_ORDER; order++) {
+                out.startPart(order);
+                int[] ids = new int[order];
+                for (int row = 0; row < 25 * order; row++) {
+                    for (int j = 0; j < order; j++) ids[j] = row + j + 1;
+                    out.add(ids, row + 1, row % 2);
+                    written[order]++;
+                }
+                out.endPart();
+            }
+            journal = out.commit();
+        }
+
+        long[] replayed = new long[Tokenizer.MAX_ORDER + 1];
+        List<Integer> pairCounts = new ArrayList<>();
+        ImportJournal.replay(journal, new ImportJournal.Chunks() {
+            @Override
+            public void wordPairs(int part, int chunk, int partition, List<WordPair> rows) {
+                replayed[2] += rows.size();
+                for (WordPair wp : rows) pairCounts.add(wp.getOccurrenceCount());
+            }
+
+            @Override
+            public void wordTriplets(int part, int chunk, int partition, List<WordTriplet> rows) {
+                replayed[3] += rows.size();
+            }
+
+            @Override
+            public void wordNgrams(int part, int chunk, int partition, List<WordNgram> rows) {
+                replayed[rows.get(0).getOrder()] += rows.size();
+            }
+        });
+
+        long[] expected = new long[written.length];
+        for (int order = 0; order < written.length; order++) expected[order] = written[order];
+        assertArrayEquals(expected, replayed);
+        assertArrayEquals(expected, ImportJournal.rowsByOrder(journal));
+        assertEquals(50, pairCounts.size());
+        assertEquals(50 * 51 / 2, pairCounts.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    void uncommittedJournalLeavesNothing() throws IOException {
+        try (ImportJournal.Writer out = ImportJournal.create(dir, "batch", 7, 1)) {
+            out.addWordPairs(pairs(3));
+        }
+        try (var files = Files.list(dir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        Path other = Files.writeString(dir.resolve("other.journal"), "not a journal at all");
+        assertThrows(IOException.class, () -> ImportJournal.replay(other, null));
+        assertThrows(IOException.class, () -> ImportJournal.rowsByOrder(other));
+    }
+}
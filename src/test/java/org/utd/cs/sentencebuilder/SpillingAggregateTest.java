@@ -0,0 +1,87 @@
+/**
+ * SpillingAggregateTest.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  N-gram totals drained from a SpillingAggregate must equal those of one
+ *  in-memory Result merged from the same files, however often it spilled.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillingAggregateTest {
+
+    @TempDir
+    Path dir;
+
+    private List<Tokenizer.Result> files(int maxOrder) throws IOException {
+        Tokenizer.Options options = new Tokenizer.Options().setMaxOrder(maxOrder);
+        List<Tokenizer.Result> results = new ArrayList<>();
+        results.add(Tokenizer.processFile(TokenizerEquivalenceTest.SAMPLE, options));
+        results.add(Tokenizer.processFile(TokenizerEquivalenceTest.FIXTURE, options));
+        for (int i = 0; i < 6; i++) {
+            Path file = TokenizerEquivalenceTest.shuffledFixture(dir, "part" + i + ".txt", 20_000 * (i + 1));
+            // rotate the lines so each file adds n-grams the others do not have
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            StringBuilder text = new StringBuilder();
+            for (String line : lines.subList(i * 7, lines.size())) {
+                text.append(line).append(" part").append(i).append('\n');
+            }
+            results.add(Tokenizer.process(text.toString(), options));
+        }
+        return results;
+    }
+
+    private void spilledMatchesInMemory(int maxOrder, long budgetBytes, boolean mustSpill) throws IOException {
+        List<Tokenizer.Result> results = files(maxOrder);
+        Tokenizer.Result merged = new Tokenizer.Result(new Tokenizer.Options().setMaxOrder(maxOrder));
+        for (Tokenizer.Result r : results) merged.merge(r);
+
+        try (SpillingAggregate aggregate = new SpillingAggregate(maxOrder, budgetBytes)) {
+            for (Tokenizer.Result r : results) aggregate.merge(r);
+            Counts spilled = Counts.of(aggregate);
+            if (mustSpill) assertTrue(aggregate.spills() > 1, "spills: " + aggregate.spills());
+            Counts.assertSameNgrams(Counts.of(merged), spilled, "budget " + budgetBytes);
+        }
+    }
+
+    @Test
+    void spilledTotalsMatchInMemory() throws IOException {
+        spilledMatchesInMemory(Tokenizer.MAX_ORDER, 1, true);
+        spilledMatchesInMemory(3, 64 << 10, true);
+    }
+
+    @Test
+    void unspilledTotalsMatchInMemory() throws IOException {
+        spilledMatchesInMemory(Tokenizer.MAX_ORDER, Long.MAX_VALUE, false);
+    }
+
+    @Test
+    void dropsNgramsOfUnmappedWords() throws IOException {
+        try (SpillingAggregate aggregate = new SpillingAggregate(2, 1)) {
+            aggregate.merge(Tokenizer.process("Red fish swim. Blue fish swim."));
+            WordDictionary words = aggregate.finish();
+            int[] ids = new int[words.size()];
+            for (int id = 0; id < ids.length; id++) ids[id] = words.word(id).equals("fish") ? -1 : id;
+
+            List<String> rows = new ArrayList<>();
+            long drained = aggregate.drain(2, ids, (wordIds, count, end) ->
+                    rows.add(words.word(wordIds[0]) + " " + words.word(wordIds[1]) + " " + count + " " + end));
+            assertEquals(List.of(), rows);
+            assertEquals(0, drained);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/**
+ * TokenizerEquivalenceTest.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  The tokenizer's faster paths must count exactly what the plain one does: the
+ *  SCANNER, LEGACY (BreakIterator) and UTF8 engines, files read in chunks of any
+ *  size, and text split into pieces tokenized on a ForkJoinPool. Each test builds
+ *  the same Result two ways and compares words, n-grams up to MAX_ORDER, sentence
+ *  lengths and the token count.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenizerEquivalenceTest {
+
+    static final Path SAMPLE = Path.of("data", "sample.txt");
+    static final Path FIXTURE = Path.of("data", "tokenizer-fixture.txt");
+
+    private static ForkJoinPool pool;
+
+    @TempDir
+    Path dir;
+
+    @BeforeAll
+    static void startPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void stopPool() {
+        pool.shutdown();
+    }
+
+    static Tokenizer.Options options(Tokenizer.Engine engine) {
+        return new Tokenizer.Options().setEngine(engine).setMaxOrder(Tokenizer.MAX_ORDER);
+    }
+
+    /**
+     * Writes at least bytes bytes of the fixture's lines in a seeded random order, so chunk and
+     * piece edges fall on every kind of sentence, quote, abbreviation and multi-byte character.
+     */
+    static Path shuffledFixture(Path dir, String name, long bytes) throws IOException {
+        List<String> lines = Files.readAllLines(FIXTURE, StandardCharsets.UTF_8);
+        Random random = new Random(4485);
+        StringBuilder text = new StringBuilder();
+        long written = 0;
+        while (written < bytes) {
+            String line = lines.get(random.nextInt(lines.size()));
+            text.append(line).append(random.nextInt(8) == 0 ? "\r\n" : "\n");
+            written += line.getBytes(StandardCharsets.UTF_8).length + 2;
+        }
+        return Files.writeString(dir.resolve(name), text, StandardCharsets.UTF_8);
+    }
+
+    static Counts inMemory(Path file, Tokenizer.Engine engine) throws IOException {
+        return Counts.of(Tokenizer.process(Files.readString(file, StandardCharsets.UTF_8), options(engine)));
+    }
+
+    @Test
+    void enginesAgree() throws IOException {
+        for (Path file : List.of(SAMPLE, FIXTURE, shuffledFixture(dir, "shuffled.txt", 200_000))) {
+            String text = Files.readString(file, StandardCharsets.UTF_8);
+            Counts scanner = inMemory(file, Tokenizer.Engine.SCANNER);
+            Counts legacy = inMemory(file, Tokenizer.Engine.LEGACY);
+            Counts utf8 = Counts.of(Tokenizer.process(
+                    ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), options(Tokenizer.Engine.UTF8)));
+
+            assertTrue(scanner.tokens > 0, file + " has tokens");
+            Counts.assertSame(legacy, scanner, file + " SCANNER vs LEGACY");
+            Counts.assertSame(scanner, utf8, file + " UTF8 vs SCANNER");
+            for (Tokenizer.Engine engine : Tokenizer.Engine.values()) {
+                Counts.assertSame(scanner, Counts.of(Tokenizer.processFile(file, options(engine))),
+                        file + " processFile " + engine);
+            }
+        }
+    }
+
+    @Test
+    void chunkSizesAgree() throws IOException {
+        Path shuffled = shuffledFixture(dir, "shuffled.txt", 50_000);
+        for (Tokenizer.Engine engine : Tokenizer.Engine.values()) {
+            Counts whole = inMemory(FIXTURE, engine);
+            // every cut of the fixture, including ones inside multi-byte characters
+            for (int chunkBytes = 16; chunkBytes <= 48; chunkBytes++) {
+                Counts.assertSame(whole, Counts.of(Tokenizer.processFile(FIXTURE, chunkBytes, null,
+                        Tokenizer.SEGMENT_CHARS, options(engine))), "fixture " + engine + " chunk " + chunkBytes);
+            }
+
+            whole = inMemory(shuffled, engine);
+            for (int chunkBytes : new int[] {97, 1000, 4099, 65536}) {
+                Counts.assertSame(whole, Counts.of(Tokenizer.processFile(shuffled, chunkBytes, null,
+                        Tokenizer.SEGMENT_CHARS, options(engine))), "shuffled " + engine + " chunk " + chunkBytes);
+            }
+        }
+    }
+
+    @Test
+    void parallelAgreesWithSequential() throws IOException {
+        Path shuffled = shuffledFixture(dir, "shuffled.txt", 300_000);
+        String text = Files.readString(shuffled, StandardCharsets.UTF_8);
+        for (Tokenizer.Engine engine : Tokenizer.Engine.values()) {
+            Counts sequential = inMemory(shuffled, engine);
+            for (int segmentChars : new int[] {64, 1000, 20_000}) {
+                Counts.assertSame(sequential, Counts.of(Tokenizer.processParallel(text, pool, segmentChars,
+                        options(engine))), engine + " processParallel segment " + segmentChars);
+                Counts.assertSame(sequential, Counts.of(Tokenizer.processFile(shuffled, 50_000, pool, segmentChars,
+                        options(engine))), engine + " parallel processFile segment " + segmentChars);
+            }
+        }
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        Path empty = Files.createFile(dir.resolve("empty.txt"));
+        for (Tokenizer.Engine engine : Tokenizer.Engine.values()) {
+            Counts none = inMemory(empty, engine);
+            assertTrue(none.words.isEmpty() && none.tokens == 0, engine + " counts nothing");
+            Counts.assertSame(none, Counts.of(Tokenizer.processFile(empty, options(engine))),
+                    "empty processFile " + engine);
+            Counts.assertSame(none, Counts.of(Tokenizer.processFileParallel(empty, options(engine))),
+                    "empty processFileParallel " + engine);
+        }
+    }
+
+    @Test
+    void fileLargerThanOneChunk() throws IOException {
+        Path large = shuffledFixture(dir, "large.txt", Tokenizer.CHUNK_BYTES + (1 << 20));
+        assertTrue(Files.size(large) > Tokenizer.CHUNK_BYTES);
+
+        Counts whole = inMemory(large, Tokenizer.Engine.SCANNER);
+        for (Tokenizer.Engine engine : List.of(Tokenizer.Engine.SCANNER, Tokenizer.Engine.UTF8)) {
+            Counts.assertSame(whole, Counts.of(Tokenizer.processFile(large, options(engine))),
+                    "large processFile " + engine);
+            Counts.assertSame(whole, Counts.of(Tokenizer.processFileParallel(large, options(engine))),
+                    "large processFileParallel " + engine);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * WordIdCacheTest.java
+ * CS4485 - Fall 2025 - Sentence Builder Project
+ *
+ * Description:
+ *  WordIdCache against an in-memory words table whose word_value compares like
+ *  MySQL's default accent- and case-insensitive collation, so "cafe" and "café"
+ *  are one row. New words get ids from the reserved ranges, and the ids the cache
+ *  hands to n-grams must always be ids of a row.
+ */
+
+package org.utd.cs.sentencebuilder;
+
+import java.sql.SQLException;
+import java.text.Collator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.ObjIntConsumer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WordIdCacheTest {
+
+    /** word_value -> word_id, unique under the collation, plus the id allocator. */
+    static final class CollatedTable implements WordIdCache.Store {
+        final Map<String, Integer> rows;
+        int nextId = 1;
+        int reserved;
+
+        CollatedTable() {
+            Collator collator = Collator.getInstance(Locale.ROOT);
+            collator.setStrength(Collator.PRIMARY);
+            rows = new TreeMap<>(collator);
+        }
+
+        /** An insert of (word_id, word_value): a collation-equal row keeps its id. */
+        void insert(int wordId, String word) {
+            rows.putIfAbsent(word, wordId);
+            nextId = Math.max(nextId, wordId + 1);
+        }
+
+        void insertAll(List<Word> words) {
+            for (Word w : words) insert(w.getWordId(), w.getWordValue());
+        }
+
+        @Override
+        public void scanWordIds(ObjIntConsumer<String> consumer) {
+            rows.forEach(consumer::accept);
+        }
+
+        @Override
+        public int[] resolveWordIds(List<String> words) {
+            int[] ids = new int[words.size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = rows.getOrDefault(words.get(i), -1);
+            return ids;
+        }
+
+        @Override
+        public int reserveWordIds(int count) {
+            reserved += count;
+            int first = nextId;
+            nextId += count;
+            return first;
+        }
+    }
+
+    private static WordDictionary dictionary(String... words) {
+        WordDictionary d = new WordDictionary();
+        for (String w : words) d.add(w);
+        return d;
+    }
+
+    @Test
+    void newWordsGetReservedIds() throws SQLException {
+        CollatedTable table = new CollatedTable();
+        table.insert(1, "red");
+        table.insert(2, "fish");
+        WordIdCache cache = WordIdCache.load(table);
+        assertEquals(2, cache.size());
+
+        int[] ids = cache.idsFor(dictionary("fish", "blue", "red", "swim"));
+        int blue = ids[1];
+        assertTrue(blue > 2, "new ids start above the table's");
+        assertArrayEquals(new int[] {2, blue, 1, blue + 1}, ids);
+        assertEquals(2, cache.newWordCount());
+        assertEquals(2, table.reserved, "reserves just the ids it hands out");
+
+        // the same word always gets the same id, and toWords writes it with that id
+        assertArrayEquals(new int[] {blue + 1, blue}, cache.idsFor(dictionary("swim", "blue")));
+        List<Word> words = cache.toWords(dictionary("swim"));
+        assertEquals(blue + 1, words.get(0).getWordId());
+        assertEquals(2, cache.newWordCount());
+    }
+
+    @Test
+    void reconcileTakesTheIdOfARowStoredFirst() throws SQLException {
+        CollatedTable table = new CollatedTable();
+        WordIdCache cache = WordIdCache.load(table);
+
+        List<Word> words = cache.toWords(dictionary("tea", "milk"));
+        // another importer stores "tea" under its own id first; this insert only adds counts
+        int theirs = table.reserveWordIds(1);
+        table.insert(theirs, "tea");
+        table.insertAll(words);
+
+        assertEquals(1, cache.reconcile());
+        assertEquals(theirs, cache.idOf("tea"));
+        assertEquals(table.rows.get("milk"), cache.idOf("milk"));
+    }
+
+    @Test
+    void takesTheIdOfACollationEqualRow() throws SQLException {
+        CollatedTable table = new CollatedTable();
+        table.insert(1, "cafe");
+        WordIdCache cache = WordIdCache.load(table);
+
+        WordDictionary file = dictionary("café", "latte");
+        table.insertAll(cache.toWords(file));
+        assertEquals(1, cache.reconcile());
+
+        assertArrayEquals(new int[] {1, table.rows.get("latte")}, cache.storedIdsFor(file));
+        assertEquals(1, cache.idOf("café"));
+        assertEquals(1, cache.idOf("cafe"));
+    }
+
+    @Test
+    void looksUpWordsItDoesNotKnow() throws SQLException {
+        // resuming a batch: the words were stored by an earlier run, under the table's spelling
+        CollatedTable table = new CollatedTable();
+        table.insert(1, "cafe");
+        table.insert(2, "latte");
+        WordIdCache cache = WordIdCache.load(table);
+
+        assertArrayEquals(new int[] {1, 2, -1}, cache.storedIdsFor(dictionary("CAFÉ", "latte", "unseen")));
+        assertEquals(1, cache.idOf("CAFÉ"));
+        assertEquals(0, table.reserved);
+    }
+
+    @Test
+    void collationEqualNewWordsShareOneRow() throws SQLException {
+        CollatedTable table = new CollatedTable();
+        WordIdCache cache = WordIdCache.load(table);
+
+        WordDictionary file = dictionary("naive", "naïve", "NAÏVE");
+        table.insertAll(cache.toWords(file));
+        assertEquals(1, table.rows.size());
+        cache.reconcile();
+
+        int row = table.rows.get("naive");
+        assertArrayEquals(new int[] {row, row, row}, cache.storedIdsFor(file));
+    }
+
+    @Test
+    void wordsWithoutARowGetNoId() throws SQLException {
+        CollatedTable table = new CollatedTable();
+        WordIdCache cache = WordIdCache.load(table);
+
+        // the words of a file whose import failed are assigned ids but never written
+        WordDictionary failed = dictionary("ghost");
+        cache.toWords(failed);
+        WordDictionary stored = dictionary("real");
+        table.insertAll(cache.toWords(stored));
+        cache.reconcile();
+        int reserved = table.reserved;
+
+        assertArrayEquals(new int[] {-1, table.rows.get("real")}, cache.storedIdsFor(dictionary("ghost", "real")));
+        assertArrayEquals(new int[] {-1}, cache.storedIdsFor(dictionary("unseen")));
+        assertEquals(reserved, table.reserved);
+
+        // a later import writes the word under a new id
+        table.insertAll(cache.toWords(failed));
+        cache.reconcile();
+        assertEquals(table.rows.get("ghost"), cache.storedIdsFor(failed)[0]);
+    }
+}